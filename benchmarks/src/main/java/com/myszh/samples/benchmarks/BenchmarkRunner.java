@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.benchmarks;
+
+import java.util.Arrays;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 以不同的线程数依次运行所有(或匹配的)性能测试，每个线程数输出一份JSON结果
+ * <p>
+ * 用法：java -Dbenchmark.threads=1,4,16 -jar benchmarks.jar [JMH参数，如 StringTemplateResolver]
+ * <p>
+ * 命令行指定了-t时只以该线程数运行一次
+ *
+ * @author LuoQuan
+ * @since 2022/6/25
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        int[] threads = commandLine.getThreads().hasValue()
+            ? new int[] {commandLine.getThreads().get()}
+            : Arrays.stream(System.getProperty("benchmark.threads", "1,4,16").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        for (int thread : threads) {
+            run(commandLine, thread);
+        }
+    }
+
+    private static void run(CommandLineOptions commandLine, int threads) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .parent(commandLine)
+            .threads(threads)
+            .resultFormat(ResultFormatType.JSON)
+            .result("jmh-result-t" + threads + ".json")
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.benchmarks;
+
+import com.myszh.samples.core.DefaultPOJOBuilder;
+import com.myszh.samples.core.MultiContext;
+import com.myszh.samples.core.pojo.User;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DefaultPOJOBuilder性能测试，构建msg.order.delivery定义的User，定义与core的测试相同(core的test-jar)
+ *
+ * @author LuoQuan
+ * @since 2022/6/25
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class POJOBuilderBenchmark {
+
+    private static final String DEFINITION_NAME = "msg.order.delivery";
+
+    @Param({"BINDER", "PLAN"})
+    private DefaultPOJOBuilder.BuildMode buildMode;
+
+    private DefaultPOJOBuilder pojoBuilder;
+
+    private MultiContext context;
+
+    @Setup
+    public void setup() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = POJOBuilderBenchmark.class
+            .getResourceAsStream("/application.properties")) {
+            properties.load(inputStream);
+        }
+        pojoBuilder = new DefaultPOJOBuilder(properties);
+        pojoBuilder.setBuildMode(buildMode);
+        context = MultiContext.of()
+            .add("suffix", "_sz")
+            .add("end", () -> ".001");
+    }
+
+    @Benchmark
+    public User build() {
+        return pojoBuilder.build(User.class, context, DEFINITION_NAME);
+    }
+}
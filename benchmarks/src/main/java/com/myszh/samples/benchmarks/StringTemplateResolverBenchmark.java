@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.benchmarks;
+
+import com.myszh.samples.core.MultiContext;
+import com.myszh.samples.core.StringTemplateResolver;
+import com.myszh.samples.core.pojo.Person;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StringTemplateResolver性能测试：不同的模板(占位符、SpEL、混合、嵌套)与不同的上下文(Map、bean、MultiContext)
+ *
+ * @author LuoQuan
+ * @since 2022/6/25
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringTemplateResolverBenchmark {
+
+    private static final String PLACEHOLDER = "my name is ${name}, age ${age}, addr is ${addr}";
+
+    private static final String EXPRESSION = "my name is #{name}, next year is #{age + 1}";
+
+    private static final String MIXED = "my name is ${name}, next year is #{age + 1}, addr is ${addr:unknown}";
+
+    private static final String NESTED = "my name is ${name}, addr is ${addr2}";
+
+    private final StringTemplateResolver templateResolver = StringTemplateResolver.getInstance();
+
+    /**
+     * 上下文类型
+     */
+    @Param({"map", "bean", "multi"})
+    private String contextType;
+
+    private Object context;
+
+    @Setup
+    public void setup() {
+        switch (contextType) {
+            case "map":
+                Map<String, Object> map = new HashMap<>();
+                map.put("name", "zhang san");
+                map.put("age", 18);
+                map.put("addr", "sz");
+                map.put("addr2", "${addr}");
+                context = map;
+                break;
+            case "bean":
+                context = new Person("zhang san", 18, "sz", "${addr}");
+                break;
+            case "multi":
+                context = MultiContext.of()
+                    .add("name", "zhang san")
+                    .add("age", 18)
+                    .add("addr", () -> "sz")
+                    .add("addr2", "${addr}");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown context type " + contextType);
+        }
+    }
+
+    @Benchmark
+    public String placeholder() {
+        return templateResolver.parse(PLACEHOLDER, context);
+    }
+
+    @Benchmark
+    public String expression() {
+        return templateResolver.parse(EXPRESSION, context);
+    }
+
+    @Benchmark
+    public String mixed() {
+        return templateResolver.parse(MIXED, context);
+    }
+
+    @Benchmark
+    public String nested() {
+        return templateResolver.parse(NESTED, context);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 批量处理中单个元素的结果，成功时有值，失败时有异常
+ *
+ * @param <T> 结果类型
+ * @author LuoQuan
+ * @since 2022/6/24
+ */
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class BatchResult<T> {
+
+    /**
+     * 在输入中的下标
+     */
+    private final int index;
+
+    /**
+     * 结果
+     */
+    private final T value;
+
+    /**
+     * 异常
+     */
+    private final RuntimeException error;
+
+    /**
+     * 成功
+     *
+     * @param index 下标
+     * @param value 结果
+     * @param <T>   结果类型
+     * @return BatchResult
+     */
+    public static <T> BatchResult<T> success(int index, T value) {
+        return new BatchResult<>(index, value, null);
+    }
+
+    /**
+     * 失败
+     *
+     * @param index 下标
+     * @param error 异常
+     * @param <T>   结果类型
+     * @return BatchResult
+     */
+    public static <T> BatchResult<T> failure(int index, RuntimeException error) {
+        return new BatchResult<>(index, null, error);
+    }
+
+    /**
+     * 是否成功
+     *
+     * @return true, false
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 批量处理：按块分发到Executor并行执行，结果按输入顺序返回，单个元素失败不影响其他元素
+ * <p>
+ * 单个元素抛出的任何异常，包括Error(如表达式递归过深的StackOverflowError)，都记录在对应的结果中，
+ * 只有内存不足等虚拟机无法继续运行的错误会中断整个批量
+ * <p>
+ * 调用线程也领取块执行，只等待已经被其他线程领取、正在执行的块。
+ * 在同一个有界Executor的线程中调用时，即使提交的任务排队得不到执行，调用线程也会执行完所有块，不会死锁
+ *
+ * @author LuoQuan
+ * @since 2022/6/24
+ */
+final class Batches {
+
+    /**
+     * 每个并行度分配的块数，块越多负载越均衡
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private Batches() {
+    }
+
+    /**
+     * 批量执行
+     *
+     * @param items     输入
+     * @param task      对单个元素的处理
+     * @param wrapError 把单个元素的异常转换为结果中的异常
+     * @param executor  执行器，为null时在当前线程顺序执行
+     * @param <I>       输入类型
+     * @param <T>       结果类型
+     * @return 按输入顺序排列的结果
+     */
+    static <I, T> List<BatchResult<T>> execute(List<I> items, Function<I, T> task,
+        BiFunction<I, Throwable, RuntimeException> wrapError, Executor executor) {
+        int size = items.size();
+        @SuppressWarnings("unchecked")
+        BatchResult<T>[] results = new BatchResult[size];
+        if (executor == null || size <= 1) {
+            executeChunk(items, task, wrapError, results, 0, size);
+            return Arrays.asList(results);
+        }
+
+        int parallelism = executor instanceof ForkJoinPool
+            ? ((ForkJoinPool) executor).getParallelism()
+            : Runtime.getRuntime().availableProcessors();
+        int chunkSize = Math.max(1, size / (parallelism * CHUNKS_PER_THREAD));
+        int chunks = (size + chunkSize - 1) / chunkSize;
+        AtomicInteger nextChunk = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(chunks);
+        AtomicReference<Throwable> fatal = new AtomicReference<>();
+        Runnable worker = () -> {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+                int start = chunk * chunkSize;
+                try {
+                    executeChunk(items, task, wrapError, results, start, Math.min(size, start + chunkSize));
+                } catch (Throwable e) {
+                    fatal.compareAndSet(null, e);
+                    throw e;
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        for (int i = Math.min(parallelism, chunks - 1); i > 0; i--) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                // 执行器饱和，剩下的块由当前线程执行
+                break;
+            }
+        }
+        worker.run();
+        awaitUninterruptibly(done);
+        if (fatal.get() != null) {
+            throw (Error) fatal.get();
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 按流处理，元素在消费时才处理，结果中的下标是元素在输入流中的位置；并行流按输入流的设置并行
+     *
+     * @param items     输入
+     * @param task      对单个元素的处理
+     * @param wrapError 把单个元素的异常转换为结果中的异常
+     * @param <I>       输入类型
+     * @param <T>       结果类型
+     * @return 结果流，单个元素失败不会中断流
+     */
+    static <I, T> Stream<BatchResult<T>> stream(Stream<I> items, Function<I, T> task,
+        BiFunction<I, Throwable, RuntimeException> wrapError) {
+        Spliterator<I> source = items.spliterator();
+        // 下标在拆分之前顺序分配，处理在拆分之后，并行流中并行处理
+        Spliterator<Indexed<I>> indexed = new Spliterators.AbstractSpliterator<Indexed<I>>(
+            source.estimateSize(), source.characteristics() & (Spliterator.ORDERED | Spliterator.SIZED)) {
+
+            private int index;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Indexed<I>> action) {
+                return source.tryAdvance(item -> action.accept(new Indexed<>(index++, item)));
+            }
+        };
+        return StreamSupport.stream(indexed, items.isParallel())
+            .map(item -> execute(item.index, item.item, task, wrapError))
+            .onClose(items::close);
+    }
+
+    private static <I, T> void executeChunk(List<I> items, Function<I, T> task,
+        BiFunction<I, Throwable, RuntimeException> wrapError,
+        BatchResult<T>[] results, int start, int end) {
+        for (int i = start; i < end; i++) {
+            results[i] = execute(i, items.get(i), task, wrapError);
+        }
+    }
+
+    private static <I, T> BatchResult<T> execute(int index, I item, Function<I, T> task,
+        BiFunction<I, Throwable, RuntimeException> wrapError) {
+        try {
+            return BatchResult.success(index, task.apply(item));
+        } catch (Throwable e) {
+            if (isFatal(e)) {
+                throw (Error) e;
+            }
+            return BatchResult.failure(index, wrapError.apply(item, e));
+        }
+    }
+
+    /**
+     * 虚拟机无法继续运行的错误，不记录在单个元素的结果中。栈溢出只影响当前调用栈，不算在内
+     */
+    private static boolean isFatal(Throwable e) {
+        return (e instanceof VirtualMachineError && !(e instanceof StackOverflowError))
+            || e instanceof ThreadDeath || e instanceof LinkageError;
+    }
+
+    /**
+     * 等待所有块执行完成，被中断时继续等待，之后恢复中断状态。其他线程领取的块都在执行中，等待是有限的
+     */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 带下标的元素
+     */
+    private static final class Indexed<I> {
+
+        private final int index;
+
+        private final I item;
+
+        Indexed(int index, I item) {
+            this.index = index;
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import org.springframework.beans.BeanUtils;
+import org.springframework.boot.context.properties.bind.DataObjectPropertyName;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * POJO绑定计划
+ * <p>
+ * 第一次构建时按(类型, 定义名称)分析出需要绑定的属性、属性值模板、类型转换和嵌套对象，
+ * 之后的构建只需要解析模板、转换类型、调用setter，不再创建Binder、遍历类型、查找模板。
+ * <p>
+ * 绑定规则与Spring Boot Binder的JavaBean绑定保持一致：
+ * <li>属性名称使用短横线形式(userName -> user-name)
+ * <li>有模板的属性按字符串转换后通过setter设置，转换结果为null时不设置
+ * <li>没有模板的属性如果是JavaBean则作为嵌套对象绑定，java.*、基本类型不作为嵌套对象
+ * <li>嵌套对象的类型与正在绑定的某个上层对象类型相同时跳过，避免无限递归
+ * <li>嵌套对象已有值(getter返回非null)时绑定到已有对象上
+ * <li>只有getter的嵌套对象绑定到getter返回的对象上，返回null并且有属性需要绑定时失败
+ * <li>一个属性都没有绑定的对象返回null
+ * <p>
+ * 集合、Map、数组、构造器绑定、无法从字符串转换的类型、只有getter的属性有模板等计划不支持的情况，
+ * {@link #compile}返回null，调用方应该退回到Binder
+ *
+ * @author LuoQuan
+ * @since 2022/6/26
+ */
+final class BindingPlan {
+
+    private static final ConversionService CONVERSION_SERVICE = ApplicationConversionService.getSharedInstance();
+
+    private static final TypeDescriptor STRING_TYPE = TypeDescriptor.valueOf(String.class);
+
+    private final Constructor<?> constructor;
+
+    private final PropertySlot[] properties;
+
+    private final NestedSlot[] nestedObjects;
+
+    private BindingPlan(Constructor<?> constructor, List<PropertySlot> properties, List<NestedSlot> nestedObjects) {
+        this.constructor = constructor;
+        this.properties = properties.toArray(new PropertySlot[0]);
+        this.nestedObjects = nestedObjects.toArray(new NestedSlot[0]);
+    }
+
+    /**
+     * 分析类型生成绑定计划
+     *
+     * @param type           POJO类型
+     * @param definitionName 定义名称
+     * @param valueTemplate  属性值模板提供者
+     * @return 绑定计划，不支持时返回null
+     */
+    static BindingPlan compile(Class<?> type, String definitionName, POJOPropertyValueTemplateProvider valueTemplate) {
+        // 定义名称本身有值时Binder会尝试把字符串直接转换为目标类型，交给Binder处理
+        if (Objects.nonNull(valueTemplate.getValueTemplate(parentName(definitionName), definitionName))) {
+            return null;
+        }
+        return compile(type, definitionName, valueTemplate, new HashSet<>());
+    }
+
+    private static BindingPlan compile(Class<?> type, String name, POJOPropertyValueTemplateProvider valueTemplate,
+        Set<Class<?>> binding) {
+        Constructor<?> constructor = getDefaultConstructor(type);
+        if (Objects.isNull(constructor)) {
+            return null;
+        }
+
+        binding.add(type);
+        List<PropertySlot> properties = new ArrayList<>();
+        List<NestedSlot> nestedObjects = new ArrayList<>();
+        for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(type)) {
+            Method writeMethod = descriptor.getWriteMethod();
+            Method readMethod = descriptor.getReadMethod();
+            if ((Objects.isNull(writeMethod) && Objects.isNull(readMethod))
+                || Objects.isNull(descriptor.getPropertyType())) {
+                continue;
+            }
+            String propertyName = name + "." + DataObjectPropertyName.toDashedForm(descriptor.getName());
+            Class<?> propertyType = descriptor.getPropertyType();
+
+            String template = valueTemplate.getValueTemplate(name, propertyName);
+            if (Objects.nonNull(template)) {
+                // 只有getter时Binder比较绑定的值与getter返回的值，不一致时失败，交给Binder
+                if (Objects.isNull(writeMethod)) {
+                    return null;
+                }
+                TypeDescriptor targetType = new TypeDescriptor(MethodParameter.forExecutable(writeMethod, 0));
+                if (!isConvertible(targetType)) {
+                    return null;
+                }
+                ReflectionUtils.makeAccessible(writeMethod);
+                properties.add(new PropertySlot(template, writeMethod, targetType));
+                continue;
+            }
+
+            if (isAggregate(propertyType)) {
+                // 集合、Map、数组的元素按索引或者键绑定，计划不支持
+                if (hasAggregateTemplate(propertyName, valueTemplate)) {
+                    return null;
+                }
+                continue;
+            }
+            if (!isNestedCandidate(propertyType) || binding.contains(propertyType)) {
+                continue;
+            }
+            if (Objects.isNull(getDefaultConstructor(propertyType))) {
+                // 没有默认构造器的JavaBean，Binder会尝试构造器绑定
+                return null;
+            }
+            BindingPlan nested = compile(propertyType, propertyName, valueTemplate, binding);
+            if (Objects.isNull(nested)) {
+                return null;
+            }
+            if (!nested.isEmpty()) {
+                if (Objects.nonNull(readMethod)) {
+                    ReflectionUtils.makeAccessible(readMethod);
+                }
+                if (Objects.nonNull(writeMethod)) {
+                    ReflectionUtils.makeAccessible(writeMethod);
+                }
+                nestedObjects.add(new NestedSlot(propertyName, readMethod, writeMethod, nested));
+            }
+        }
+        binding.remove(type);
+        return new BindingPlan(constructor, properties, nestedObjects);
+    }
+
+    /**
+     * 按计划绑定
+     *
+     * @param buildContext 构建上下文
+     * @param resolver     属性值模板解析，(模板, 上下文) -> 属性值，可以是字符串或者单个SpEL表达式的原始值
+     * @return POJO实例，没有任何属性绑定时返回null
+     */
+    Object bind(Object buildContext, BiFunction<String, Object, Object> resolver) {
+        return bind(null, buildContext, resolver);
+    }
+
+    private Object bind(Object existing, Object buildContext, BiFunction<String, Object, Object> resolver) {
+        Object target = Objects.isNull(existing) ? BeanUtils.instantiateClass(constructor) : existing;
+        boolean bound = false;
+        for (PropertySlot property : properties) {
+            Object value = convert(resolver.apply(property.template, buildContext), property.targetType);
+            if (Objects.nonNull(value)) {
+                ReflectionUtils.invokeMethod(property.writeMethod, target, value);
+                bound = true;
+            }
+        }
+        for (NestedSlot nestedObject : nestedObjects) {
+            Object current = Objects.isNull(nestedObject.readMethod)
+                ? null
+                : ReflectionUtils.invokeMethod(nestedObject.readMethod, target);
+            Object value = nestedObject.plan.bind(current, buildContext, resolver);
+            if (Objects.isNull(value)) {
+                continue;
+            }
+            if (Objects.nonNull(nestedObject.writeMethod)) {
+                ReflectionUtils.invokeMethod(nestedObject.writeMethod, target, value);
+            } else if (value != current) {
+                // 与Binder一致：只有getter并且返回null时无法设置新创建的对象
+                throw new IllegalStateException("No setter found for property: " + nestedObject.name);
+            }
+            bound = true;
+        }
+        return bound ? target : null;
+    }
+
+    /**
+     * 转换属性值：已经是目标类型的值直接使用，其他值与Binder一致使用ConversionService转换，
+     * 无法从原始类型转换时按字符串转换
+     */
+    private static Object convert(Object value, TypeDescriptor targetType) {
+        if (Objects.isNull(value) || value instanceof String) {
+            return CONVERSION_SERVICE.convert(value, STRING_TYPE, targetType);
+        }
+        if (targetType.getObjectType().isInstance(value)) {
+            return value;
+        }
+        TypeDescriptor sourceType = TypeDescriptor.forObject(value);
+        if (CONVERSION_SERVICE.canConvert(sourceType, targetType)) {
+            return CONVERSION_SERVICE.convert(value, sourceType, targetType);
+        }
+        return CONVERSION_SERVICE.convert(value.toString(), STRING_TYPE, targetType);
+    }
+
+    private boolean isEmpty() {
+        return properties.length == 0 && nestedObjects.length == 0;
+    }
+
+    private static String parentName(String name) {
+        int index = name.lastIndexOf('.');
+        return index < 0 ? "" : name.substring(0, index);
+    }
+
+    private static Constructor<?> getDefaultConstructor(Class<?> type) {
+        if (type.isInterface() || type.isEnum() || Modifier.isAbstract(type.getModifiers())
+            || (type.isMemberClass() && !Modifier.isStatic(type.getModifiers()))) {
+            return null;
+        }
+        try {
+            return type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static boolean isConvertible(TypeDescriptor targetType) {
+        return !isAggregate(targetType.getType()) && CONVERSION_SERVICE.canConvert(STRING_TYPE, targetType);
+    }
+
+    private static boolean isAggregate(Class<?> type) {
+        return type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+    }
+
+    private static boolean hasAggregateTemplate(String propertyName, POJOPropertyValueTemplateProvider valueTemplate) {
+        String firstElement = propertyName + "[0]";
+        return Objects.nonNull(valueTemplate.getValueTemplate(propertyName, firstElement))
+            || !valueTemplate.getValueTemplate(propertyName).isEmpty()
+            || !valueTemplate.getValueTemplate(firstElement).isEmpty();
+    }
+
+    /**
+     * 与Binder一致：基本类型、java.*以及Object、Class不作为嵌套对象绑定
+     */
+    private static boolean isNestedCandidate(Class<?> type) {
+        return !ClassUtils.isPrimitiveOrWrapper(type) && type != Object.class && type != Class.class
+            && !type.getName().startsWith("java.");
+    }
+
+    /**
+     * 有模板的属性
+     */
+    private static final class PropertySlot {
+
+        private final String template;
+
+        private final Method writeMethod;
+
+        private final TypeDescriptor targetType;
+
+        PropertySlot(String template, Method writeMethod, TypeDescriptor targetType) {
+            this.template = template;
+            this.writeMethod = writeMethod;
+            this.targetType = targetType;
+        }
+    }
+
+    /**
+     * 嵌套对象属性
+     */
+    private static final class NestedSlot {
+
+        private final String name;
+
+        private final Method readMethod;
+
+        private final Method writeMethod;
+
+        private final BindingPlan plan;
+
+        NestedSlot(String name, Method readMethod, Method writeMethod, BindingPlan plan) {
+            this.name = name;
+            this.readMethod = readMethod;
+            this.writeMethod = writeMethod;
+            this.plan = plan;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Value;
+
+/**
+ * 缓存指标快照
+ *
+ * @author LuoQuan
+ * @since 2022/6/22
+ */
+@Value
+public class CacheMetrics {
+
+    /**
+     * 当前缓存数量
+     */
+    long size;
+
+    /**
+     * 命中次数
+     */
+    long hitCount;
+
+    /**
+     * 未命中次数
+     */
+    long missCount;
+
+    /**
+     * 命中率
+     */
+    double hitRate;
+
+    /**
+     * 未命中率
+     */
+    double missRate;
+
+    /**
+     * 淘汰数量
+     */
+    long evictionCount;
+
+    /**
+     * 加载总耗时(解析或从提供者加载)，纳秒
+     */
+    long totalLoadTime;
+
+    /**
+     * 平均加载耗时，纳秒
+     */
+    double averageLoadTime;
+
+    /**
+     * 从缓存中获取指标快照
+     *
+     * @param cache cache
+     * @return CacheMetrics
+     */
+    static CacheMetrics of(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new CacheMetrics(cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+            stats.hitRate(), stats.missRate(), stats.evictionCount(),
+            stats.totalLoadTime(), stats.averageLoadPenalty());
+    }
+}
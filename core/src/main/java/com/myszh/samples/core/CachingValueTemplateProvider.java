@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import lombok.Value;
+
+/**
+ * 带本地缓存的属性值模板提供者，放在较慢的存储(如数据库)前面
+ * <p>
+ * <li>缓存有最大数量，按W-TinyLFU淘汰
+ * <li>存在和不存在(负缓存)的模板分别设置过期时间，避免不存在的属性反复访问存储
+ * <li>超过刷新时间的缓存在访问时后台刷新，刷新期间继续返回旧值
+ * <li>同一个属性同时未命中只会加载一次，其他线程等待加载结果
+ * <li>存储支持变更通知时，清理变更父节点的缓存后再通知自己的监听器
+ *
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+public class CachingValueTemplateProvider implements POJOPropertyValueTemplateProvider {
+
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * (父节点名称, 属性名称) -> 模板
+     */
+    private final LoadingCache<TemplateKey, Optional<String>> templates;
+
+    /**
+     * 父节点名称 -> 子节点模板
+     */
+    private final LoadingCache<String, Map<String, String>> children;
+
+    public CachingValueTemplateProvider(POJOPropertyValueTemplateProvider delegate) {
+        this(delegate, new CachingValueTemplateProviderProperties());
+    }
+
+    public CachingValueTemplateProvider(POJOPropertyValueTemplateProvider delegate,
+        CachingValueTemplateProviderProperties properties) {
+        Objects.requireNonNull(delegate);
+        Objects.requireNonNull(properties);
+        long expireNanos = properties.getExpireAfterWrite().toNanos();
+        long negativeExpireNanos = properties.getNegativeExpireAfterWrite().toNanos();
+
+        Caffeine<TemplateKey, Optional<String>> templateBuilder = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfter(new WriteExpiry<TemplateKey, Optional<String>>(
+                template -> template.isPresent() ? expireNanos : negativeExpireNanos))
+            .recordStats();
+        Caffeine<String, Map<String, String>> childrenBuilder = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfter(new WriteExpiry<String, Map<String, String>>(
+                values -> values.isEmpty() ? negativeExpireNanos : expireNanos))
+            .recordStats();
+        if (Objects.nonNull(properties.getRefreshAfterWrite())) {
+            templateBuilder.refreshAfterWrite(properties.getRefreshAfterWrite());
+            childrenBuilder.refreshAfterWrite(properties.getRefreshAfterWrite());
+        }
+        this.templates = templateBuilder.build(key ->
+            Optional.ofNullable(delegate.getValueTemplate(key.getParentPropertyName(), key.getPropertyName())));
+        this.children = childrenBuilder.build(parent -> {
+            Map<String, String> values = delegate.getValueTemplate(parent);
+            return Objects.isNull(values) ? Collections.emptyMap() : Collections.unmodifiableMap(values);
+        });
+
+        delegate.addChangeListener(this::onTemplateChanged);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getValueTemplate(String parentPropertyName, String propertyName) {
+        return templates.get(new TemplateKey(parentPropertyName, propertyName)).orElse(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getValueTemplate(String propertyName) {
+        return children.get(propertyName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addChangeListener(Consumer<String> listener) {
+        Objects.requireNonNull(listener);
+        listeners.add(listener);
+    }
+
+    /**
+     * 清空缓存并通知全部变更，存储不支持变更通知时，在存储变更后调用
+     */
+    public void invalidateAll() {
+        onTemplateChanged(null);
+    }
+
+    /**
+     * 模板缓存指标，包括加载(访问存储)的耗时
+     *
+     * @return CacheMetrics
+     */
+    public CacheMetrics getTemplateCacheMetrics() {
+        return CacheMetrics.of(templates);
+    }
+
+    /**
+     * 子节点缓存指标，包括加载(访问存储)的耗时
+     *
+     * @return CacheMetrics
+     */
+    public CacheMetrics getChildrenCacheMetrics() {
+        return CacheMetrics.of(children);
+    }
+
+    private void onTemplateChanged(String parentPropertyName) {
+        if (Objects.isNull(parentPropertyName)) {
+            templates.invalidateAll();
+            children.invalidateAll();
+        } else {
+            templates.asMap().keySet().removeIf(key -> parentPropertyName.equals(key.getParentPropertyName()));
+            children.invalidate(parentPropertyName);
+        }
+        listeners.forEach(listener -> listener.accept(parentPropertyName));
+    }
+
+    @Value
+    private static class TemplateKey {
+
+        String parentPropertyName;
+
+        String propertyName;
+    }
+
+    /**
+     * 按写入时间过期，读取不影响过期时间
+     */
+    private static final class WriteExpiry<K, V> implements Expiry<K, V> {
+
+        private final ToLongFunction<V> expireNanos;
+
+        WriteExpiry(ToLongFunction<V> expireNanos) {
+            this.expireNanos = expireNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(K key, V value, long currentTime) {
+            return expireNanos.applyAsLong(value);
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+            return expireNanos.applyAsLong(value);
+        }
+
+        @Override
+        public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * 带本地缓存的属性值模板提供者配置
+ *
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+@Data
+public class CachingValueTemplateProviderProperties {
+
+    /**
+     * 缓存的最大数量，模板和子节点分别计算
+     */
+    private long maximumSize = 10_000;
+
+    /**
+     * 存在的模板写入后的过期时间
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+    /**
+     * 不存在的模板(负缓存)写入后的过期时间，通常比存在的模板短
+     */
+    private Duration negativeExpireAfterWrite = Duration.ofMinutes(1);
+
+    /**
+     * 写入后超过这个时间再被访问时在后台刷新，刷新期间继续返回旧值，为null时不刷新。
+     * 应该小于过期时间，否则过期先于刷新
+     */
+    private Duration refreshAfterWrite = Duration.ofMinutes(5);
+}
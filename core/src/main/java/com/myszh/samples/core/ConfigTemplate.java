@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import com.alibaba.fastjson.JSON;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * 预解析的__config__配置
+ * <p>
+ * JSON只解析一次，得到不可变的配置。字符串值中包含占位符或者SpEL时是动态配置，
+ * 可以按上下文渲染，渲染只替换这些字符串值，不重新解析JSON
+ *
+ * @author LuoQuan
+ * @since 2022/6/26
+ */
+final class ConfigTemplate {
+
+    /**
+     * 模板不存在时的配置
+     */
+    static final ConfigTemplate EMPTY = new ConfigTemplate(Collections.emptyMap(), false);
+
+    private final Map<String, Object> config;
+
+    private final boolean dynamic;
+
+    private ConfigTemplate(Map<String, Object> config, boolean dynamic) {
+        this.config = config;
+        this.dynamic = dynamic;
+    }
+
+    /**
+     * 解析配置
+     *
+     * @param text JSON对象，为null或者空白时返回{@link #EMPTY}
+     * @return ConfigTemplate
+     */
+    static ConfigTemplate parse(String text) {
+        if (Objects.isNull(text) || text.trim().isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, Object> config = JSON.parseObject(text);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> immutable = (Map<String, Object>) toImmutable(config);
+        return new ConfigTemplate(immutable, isDynamic(immutable));
+    }
+
+    /**
+     * 不可变的配置，动态配置中的模板保持原样
+     *
+     * @return Map
+     */
+    Map<String, Object> getConfig() {
+        return config;
+    }
+
+    /**
+     * 是否包含需要按上下文渲染的字符串值
+     *
+     * @return true, false
+     */
+    boolean isDynamic() {
+        return dynamic;
+    }
+
+    /**
+     * 渲染动态配置，非动态配置直接返回{@link #getConfig()}
+     *
+     * @param resolver 字符串值的渲染
+     * @return 不可变的配置
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> render(UnaryOperator<String> resolver) {
+        if (!dynamic) {
+            return config;
+        }
+        return (Map<String, Object>) render(config, resolver);
+    }
+
+    private static Object render(Object value, UnaryOperator<String> resolver) {
+        if (value instanceof String) {
+            return isTemplate((String) value) ? resolver.apply((String) value) : value;
+        }
+        if (value instanceof Map) {
+            Map<String, Object> rendered = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((key, item) -> rendered.put(String.valueOf(key), render(item, resolver)));
+            return Collections.unmodifiableMap(rendered);
+        }
+        if (value instanceof List) {
+            List<Object> rendered = new ArrayList<>();
+            ((List<?>) value).forEach(item -> rendered.add(render(item, resolver)));
+            return Collections.unmodifiableList(rendered);
+        }
+        return value;
+    }
+
+    private static Object toImmutable(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> immutable = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((key, item) -> immutable.put(String.valueOf(key), toImmutable(item)));
+            return Collections.unmodifiableMap(immutable);
+        }
+        if (value instanceof List) {
+            List<Object> immutable = new ArrayList<>();
+            ((List<?>) value).forEach(item -> immutable.add(toImmutable(item)));
+            return Collections.unmodifiableList(immutable);
+        }
+        return value;
+    }
+
+    private static boolean isDynamic(Object value) {
+        if (value instanceof String) {
+            return isTemplate((String) value);
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).values().stream().anyMatch(ConfigTemplate::isDynamic);
+        }
+        if (value instanceof List) {
+            return ((List<?>) value).stream().anyMatch(ConfigTemplate::isDynamic);
+        }
+        return false;
+    }
+
+    private static boolean isTemplate(String value) {
+        return value.contains(TemplatePlan.PLACEHOLDER_PREFIX) || value.contains(TemplatePlan.EXPRESSION_PREFIX);
+    }
+}
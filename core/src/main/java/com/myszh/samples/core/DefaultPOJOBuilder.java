@@ -4,12 +4,21 @@
 
 package com.myszh.samples.core;
 
-import com.alibaba.fastjson.JSONObject;
 import com.myszh.samples.core.exception.BuildException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.context.properties.source.ConfigurationProperty;
 import org.springframework.boot.context.properties.source.ConfigurationPropertyName;
@@ -27,21 +36,88 @@ public class DefaultPOJOBuilder implements POJOBuilder {
 
     private final POJOPropertyValueTemplateProvider valueTemplate;
 
+    /**
+     * 绑定计划缓存，类型 -> 定义名称 -> 绑定计划，不支持计划的类型缓存为empty
+     */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Optional<BindingPlan>>> bindingPlans =
+        new ConcurrentHashMap<>();
+
+    /**
+     * 构建配置的属性名称
+     */
+    private static final String CONFIG_KEY = "__config__";
+
+    /**
+     * 预解析的__config__缓存，定义名称 -> 配置
+     */
+    private final ConcurrentMap<String, ConfigTemplate> configs = new ConcurrentHashMap<>();
+
+    /**
+     * 模板变更的次数，生成绑定计划、解析__config__期间模板变更时不缓存结果，避免清理之后又放入基于旧模板的结果
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private BuildMode buildMode = BuildMode.BINDER;
+
+    private boolean renderConfig;
+
+    private TemplateInstrumentation instrumentation;
+
     public DefaultPOJOBuilder(POJOPropertyValueTemplateProvider valueTemplate,
         StringTemplateResolver templateResolver) {
         Objects.requireNonNull(valueTemplate);
         this.valueTemplate = valueTemplate;
         this.templateResolver = templateResolver;
+        valueTemplate.addChangeListener(this::onTemplateChanged);
     }
 
+    /**
+     * 使用Properties中的属性值模板，Properties会被复制为不可变的索引，之后的修改不可见
+     *
+     * @param properties 属性值模板
+     * @see PropertiesValueTemplateProvider
+     */
     public DefaultPOJOBuilder(Properties properties) {
-        this(new POJOPropertyValueTemplateProvider() {
-                 @Override
-                 public String getValueTemplate(String parentPropertyName, String propertyName) {
-                     return properties.getProperty(propertyName);
-                 }
-             },
-            StringTemplateResolver.getInstance());
+        this(new PropertiesValueTemplateProvider(properties), StringTemplateResolver.getInstance());
+    }
+
+    /**
+     * 设置构建方式，默认{@link BuildMode#BINDER}
+     *
+     * @param buildMode 构建方式
+     */
+    public void setBuildMode(BuildMode buildMode) {
+        Objects.requireNonNull(buildMode);
+        this.buildMode = buildMode;
+    }
+
+    /**
+     * 设置是否按构建上下文渲染__config__中包含占位符或者SpEL的字符串值，默认false(原样传给beforeBuild)
+     *
+     * @param renderConfig 是否渲染
+     */
+    public void setRenderConfig(boolean renderConfig) {
+        this.renderConfig = renderConfig;
+    }
+
+    /**
+     * 设置按定义名称的统计：调用次数、耗时分布、失败次数，PLAN方式下还有绑定计划缓存命中，默认不统计
+     *
+     * @param instrumentation 统计，为null时不统计
+     */
+    public void setInstrumentation(TemplateInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * 清空绑定计划、__config__缓存。
+     * 属性值模板提供者支持变更通知({@link POJOPropertyValueTemplateProvider#addChangeListener})时会自动清理，
+     * 否则模板变更后需要调用
+     */
+    public void clearBindingPlans() {
+        generation.incrementAndGet();
+        bindingPlans.clear();
+        configs.clear();
     }
 
     /**
@@ -51,37 +127,236 @@ public class DefaultPOJOBuilder implements POJOBuilder {
     public <T> T build(Class<T> type, Object buildContext, String definitionName,
         Predicate<Map<String, Object>> beforeBuild) {
         try {
-            if (Objects.nonNull(beforeBuild) && !beforeBuild.test(getConfig(definitionName))) {
+            if (Objects.nonNull(beforeBuild) && !beforeBuild.test(getConfig(definitionName, buildContext))) {
                 return null;
             }
 
-            return new Binder(name -> getProperty(name, buildContext))
-                .bind(definitionName, type)
-                .get();
+            return doBuild(type, buildContext, definitionName, valueTemplate);
+        } catch (Throwable throwable) {
+            throw new BuildException("build POJO[" + type.getName() + "] error!!", throwable);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * beforeBuild只使用配置执行一次，结果应用到整个批量(渲染的动态配置除外)；
+     * 绑定计划只获取一次，Binder方式下属性值模板在批量内只查找一次
+     */
+    @Override
+    public <T> List<BatchResult<T>> buildAll(Class<T> type, List<?> buildContexts, String definitionName,
+        Predicate<Map<String, Object>> beforeBuild, Executor executor) {
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(buildContexts);
+        List<?> items = buildContexts instanceof RandomAccess ? buildContexts : new ArrayList<>(buildContexts);
+        Predicate<Object> shouldBuild = shouldBuild(type, definitionName, beforeBuild);
+        POJOPropertyValueTemplateProvider batchTemplate = new BatchValueTemplateProvider(valueTemplate);
+        return Batches.execute(items,
+            buildContext -> shouldBuild.test(buildContext)
+                ? doBuild(type, buildContext, definitionName, batchTemplate)
+                : null,
+            (buildContext, e) -> new BuildException("build POJO[" + type.getName() + "] error!!", e),
+            executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * beforeBuild只使用配置执行一次(渲染的动态配置除外)
+     */
+    @Override
+    public <T> Stream<BatchResult<T>> buildStream(Class<T> type, Stream<?> buildContexts, String definitionName,
+        Predicate<Map<String, Object>> beforeBuild) {
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(buildContexts);
+        Predicate<Object> shouldBuild = shouldBuild(type, definitionName, beforeBuild);
+        POJOPropertyValueTemplateProvider batchTemplate = new BatchValueTemplateProvider(valueTemplate);
+        return Batches.stream(buildContexts,
+            buildContext -> shouldBuild.test(buildContext)
+                ? doBuild(type, buildContext, definitionName, batchTemplate)
+                : null,
+            (buildContext, e) -> new BuildException("build POJO[" + type.getName() + "] error!!", e));
+    }
+
+    /**
+     * 批量构建时的beforeBuild：静态配置只执行一次，需要渲染的动态配置按元素执行
+     *
+     * @return 构建上下文 -> 是否构建
+     */
+    private Predicate<Object> shouldBuild(Class<?> type, String definitionName,
+        Predicate<Map<String, Object>> beforeBuild) {
+        if (Objects.isNull(beforeBuild)) {
+            return buildContext -> true;
+        }
+        try {
+            ConfigTemplate config = getConfigTemplate(definitionName);
+            if (renderConfig && config.isDynamic()) {
+                return buildContext -> beforeBuild.test(renderConfig(config, buildContext));
+            }
+            boolean build = beforeBuild.test(config.getConfig());
+            return buildContext -> build;
         } catch (Throwable throwable) {
             throw new BuildException("build POJO[" + type.getName() + "] error!!", throwable);
         }
     }
 
-    private Map<String, Object> getConfig(String definitionName) {
-        String config = valueTemplate.getValueTemplate(
-            definitionName, "__config__");
-        return JSONObject.parseObject(config);
+    private <T> T doBuild(Class<T> type, Object buildContext, String definitionName,
+        POJOPropertyValueTemplateProvider valueTemplate) {
+        if (Objects.isNull(instrumentation)) {
+            return bind(type, buildContext, definitionName, valueTemplate);
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T pojo = bind(type, buildContext, definitionName, valueTemplate);
+            failed = false;
+            return pojo;
+        } finally {
+            instrumentation.record(definitionName, System.nanoTime() - start, failed);
+        }
+    }
+
+    private <T> T bind(Class<T> type, Object buildContext, String definitionName,
+        POJOPropertyValueTemplateProvider valueTemplate) {
+        if (buildMode == BuildMode.PLAN) {
+            Optional<BindingPlan> plan = getBindingPlan(type, definitionName);
+            if (plan.isPresent()) {
+                Object pojo = plan.get().bind(buildContext, this::resolveValue);
+                if (Objects.isNull(pojo)) {
+                    throw new NoSuchElementException("No value bound");
+                }
+                return type.cast(pojo);
+            }
+        }
+
+        return new Binder(name -> getProperty(name, buildContext, valueTemplate))
+            .bind(definitionName, type)
+            .get();
+    }
+
+    private Optional<BindingPlan> getBindingPlan(Class<?> type, String definitionName) {
+        ConcurrentMap<String, Optional<BindingPlan>> plans =
+            bindingPlans.computeIfAbsent(type, key -> new ConcurrentHashMap<>());
+        Optional<BindingPlan> plan = plans.get(definitionName);
+        if (Objects.nonNull(instrumentation)) {
+            instrumentation.recordCache(definitionName, Objects.nonNull(plan));
+        }
+        if (Objects.isNull(plan)) {
+            long current = generation.get();
+            plan = plans.computeIfAbsent(definitionName,
+                key -> Optional.ofNullable(BindingPlan.compile(type, definitionName, valueTemplate)));
+            if (current != generation.get()) {
+                plans.remove(definitionName, plan);
+            }
+        }
+        return plan;
+    }
+
+    private Map<String, Object> getConfig(String definitionName, Object buildContext) {
+        ConfigTemplate config = getConfigTemplate(definitionName);
+        return renderConfig ? renderConfig(config, buildContext) : config.getConfig();
+    }
+
+    private ConfigTemplate getConfigTemplate(String definitionName) {
+        long current = generation.get();
+        ConfigTemplate config = configs.computeIfAbsent(definitionName,
+            key -> ConfigTemplate.parse(valueTemplate.getValueTemplate(definitionName, CONFIG_KEY)));
+        if (current != generation.get()) {
+            configs.remove(definitionName, config);
+        }
+        return config;
+    }
+
+    private Map<String, Object> renderConfig(ConfigTemplate config, Object buildContext) {
+        return config.render(template -> templateResolver.parse(template, buildContext));
+    }
+
+    /**
+     * 模板变更：清理变更节点所属定义的__config__和绑定计划
+     *
+     * @param parentPropertyName 变更属性的父节点名称，null表示全部变更
+     */
+    private void onTemplateChanged(String parentPropertyName) {
+        if (Objects.isNull(parentPropertyName)) {
+            clearBindingPlans();
+            return;
+        }
+        // 先于清理递增，正在生成的计划放入缓存后能发现模板已经变更
+        generation.incrementAndGet();
+        if (TemplateIndex.parentOf(CONFIG_KEY).equals(parentPropertyName)) {
+            // 按属性名称查找的提供者中所有定义共用顶层的__config__，缓存的键是定义名称，需要全部清理
+            configs.clear();
+        } else {
+            configs.remove(parentPropertyName);
+        }
+        bindingPlans.values().forEach(plans -> plans.keySet().removeIf(definitionName ->
+            parentPropertyName.equals(definitionName) || parentPropertyName.startsWith(definitionName + ".")
+                || definitionName.startsWith(parentPropertyName + ".")));
     }
 
 
-    private ConfigurationProperty getProperty(ConfigurationPropertyName name, Object buildContext) {
-        String valueTemplate = this.valueTemplate.getValueTemplate(
+    private ConfigurationProperty getProperty(ConfigurationPropertyName name, Object buildContext,
+        POJOPropertyValueTemplateProvider templateProvider) {
+        String valueTemplate = templateProvider.getValueTemplate(
             name.getParent().toString(),
             name.toString());
         // 解析
         if (Objects.isNull(valueTemplate)) {
             return null;
         }
-        String value = valueTemplate;
+        return new ConfigurationProperty(name, resolveValue(valueTemplate, buildContext), null);
+    }
+
+    /**
+     * 解析属性值模板，只有一个SpEL表达式的模板(如 #{order.amount})直接使用表达式的原始值，
+     * 由Binder或者绑定计划按属性类型转换，省去转换为字符串再解析的开销
+     */
+    private Object resolveValue(String valueTemplate, Object buildContext) {
         if (StringUtils.hasText(valueTemplate)) {
-            value = templateResolver.parse(valueTemplate, buildContext);
+            return templateResolver.parseValue(valueTemplate, buildContext);
+        }
+        return valueTemplate;
+    }
+
+    /**
+     * 批量构建时共享的属性值模板，同一个属性在批量内只查找一次
+     */
+    private static final class BatchValueTemplateProvider implements POJOPropertyValueTemplateProvider {
+
+        private final POJOPropertyValueTemplateProvider delegate;
+
+        private final ConcurrentMap<String, Optional<String>> templates = new ConcurrentHashMap<>();
+
+        BatchValueTemplateProvider(POJOPropertyValueTemplateProvider delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getValueTemplate(String parentPropertyName, String propertyName) {
+            return templates.computeIfAbsent(propertyName,
+                key -> Optional.ofNullable(delegate.getValueTemplate(parentPropertyName, propertyName)))
+                .orElse(null);
         }
-        return new ConfigurationProperty(name, value, null);
+
+        @Override
+        public Map<String, String> getValueTemplate(String propertyName) {
+            return delegate.getValueTemplate(propertyName);
+        }
+    }
+
+    /**
+     * 构建方式
+     */
+    public enum BuildMode {
+        /**
+         * 每次构建都通过Spring Boot Binder绑定
+         */
+        BINDER,
+        /**
+         * 第一次构建时按(类型, 定义名称)生成绑定计划并缓存，之后只解析模板、设置属性，
+         * 计划不支持的类型(集合、Map、构造器绑定等)自动退回到Binder
+         */
+        PLAN
     }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import lombok.Value;
+import org.springframework.expression.spel.SpelCompilerMode;
+
+/**
+ * SpEL表达式指标
+ *
+ * @author LuoQuan
+ * @since 2022/6/22
+ */
+@Value
+public class ExpressionMetrics {
+
+    /**
+     * 表达式所在的模板
+     */
+    String template;
+
+    /**
+     * 表达式
+     */
+    String expression;
+
+    /**
+     * 编译模式
+     */
+    SpelCompilerMode compilerMode;
+
+    /**
+     * 是否已经编译为字节码
+     */
+    boolean compiled;
+}
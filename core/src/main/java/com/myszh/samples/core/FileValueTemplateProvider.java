@@ -0,0 +1,252 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 基于properties文件的属性值模板提供者，支持热加载
+ * <p>
+ * 文件解析为不可变的索引({@link TemplateIndex})，查找不加锁。
+ * 多个文件中相同的属性名称以后面的文件为准。
+ * 调用{@link #watch()}后通过WatchService监听文件变更，{@value #QUIET_PERIOD_MILLIS}毫秒内没有新的事件后
+ * 只重新解析变更的文件，合并出新的索引后整体替换，再通知变更的父节点，
+ * {@link DefaultPOJOBuilder}据此清理相关定义的绑定计划和__config__缓存
+ * <p>
+ * 使用完毕后需要调用{@link #close()}停止监听
+ *
+ * @author LuoQuan
+ * @since 2022/6/26
+ */
+public class FileValueTemplateProvider implements POJOPropertyValueTemplateProvider, Closeable {
+
+    private static final Log LOGGER = LogFactory.getLog(FileValueTemplateProvider.class);
+
+    /**
+     * 最后一个事件之后等待的时间，保存文件通常是先截断再写入，中间读取到的是不完整的内容
+     */
+    private static final long QUIET_PERIOD_MILLIS = 200;
+
+    private final Charset charset;
+
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 文件 -> 文件中的模板，按构造时的顺序
+     */
+    private final Map<Path, Map<String, String>> fileTemplates = new LinkedHashMap<>();
+
+    private volatile TemplateIndex index = TemplateIndex.EMPTY;
+
+    private WatchService watchService;
+
+    private Thread watchThread;
+
+    /**
+     * 使用UTF-8读取文件
+     *
+     * @param files properties文件
+     */
+    public FileValueTemplateProvider(Collection<Path> files) {
+        this(files, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param files   properties文件，不存在的文件视为空文件
+     * @param charset 文件编码
+     */
+    public FileValueTemplateProvider(Collection<Path> files, Charset charset) {
+        Objects.requireNonNull(files);
+        Objects.requireNonNull(charset);
+        this.charset = charset;
+        for (Path file : files) {
+            fileTemplates.put(file.toAbsolutePath().normalize(), Collections.emptyMap());
+        }
+        reload();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getValueTemplate(String parentPropertyName, String propertyName) {
+        return index.get(propertyName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getValueTemplate(String propertyName) {
+        return index.getChildren(propertyName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addChangeListener(Consumer<String> listener) {
+        Objects.requireNonNull(listener);
+        listeners.add(listener);
+    }
+
+    /**
+     * 重新加载全部文件
+     */
+    public void reload() {
+        reload(fileTemplates.keySet());
+    }
+
+    /**
+     * 开始监听文件变更，监听线程是守护线程
+     *
+     * @return this
+     */
+    public synchronized FileValueTemplateProvider watch() {
+        if (Objects.nonNull(watchService) || fileTemplates.isEmpty()) {
+            return this;
+        }
+        try {
+            watchService = fileTemplates.keySet().iterator().next().getFileSystem().newWatchService();
+            Set<Path> directories = new HashSet<>();
+            for (Path file : fileTemplates.keySet()) {
+                Path directory = file.getParent();
+                if (directories.add(directory)) {
+                    directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("watch template files failed", e);
+        }
+        WatchService service = watchService;
+        watchThread = new Thread(() -> watchLoop(service), "template-file-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        return this;
+    }
+
+    /**
+     * 停止监听
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (Objects.nonNull(watchService)) {
+            watchService.close();
+            watchService = null;
+            watchThread.interrupt();
+            watchThread = null;
+        }
+    }
+
+    private void watchLoop(WatchService service) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                Set<Path> changed = new HashSet<>();
+                collectChanged(key, changed);
+                // 等到一段时间内没有新的事件再加载，合并保存一次产生的多个事件，避免读取到写了一半的文件
+                WatchKey next;
+                while ((next = service.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collectChanged(next, changed);
+                }
+                if (!changed.isEmpty()) {
+                    try {
+                        reload(changed);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("reload template files " + changed + " failed", e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collectChanged(WatchKey key, Set<Path> changed) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.addAll(fileTemplates.keySet());
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context()).toAbsolutePath().normalize();
+            if (fileTemplates.containsKey(file)) {
+                changed.add(file);
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * 重新解析变更的文件，合并出新的索引后整体替换，并通知变更的父节点
+     *
+     * @param files 变更的文件
+     */
+    private synchronized void reload(Collection<Path> files) {
+        Map<Path, Map<String, String>> loaded = new HashMap<>();
+        for (Path file : files) {
+            loaded.put(file, load(file));
+        }
+        fileTemplates.putAll(loaded);
+
+        Map<String, String> templates = new HashMap<>();
+        fileTemplates.values().forEach(templates::putAll);
+        TemplateIndex oldIndex = index;
+        TemplateIndex newIndex = TemplateIndex.of(templates);
+        index = newIndex;
+        oldIndex.changedParents(newIndex).forEach(parent -> listeners.forEach(listener -> listener.accept(parent)));
+    }
+
+    /**
+     * 按指定编码流式读取文件
+     *
+     * @param file 文件
+     * @return 属性名称 -> 模板
+     */
+    private Map<String, String> load(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyMap();
+        }
+        try (Reader reader = Files.newBufferedReader(file, charset)) {
+            Properties properties = new Properties();
+            properties.load(reader);
+            Map<String, String> templates = new HashMap<>(properties.size() * 4 / 3 + 1);
+            for (String name : properties.stringPropertyNames()) {
+                templates.put(name, properties.getProperty(name));
+            }
+            return Collections.unmodifiableMap(templates);
+        } catch (IOException e) {
+            throw new UncheckedIOException("load template file[" + file + "] failed", e);
+        }
+    }
+}
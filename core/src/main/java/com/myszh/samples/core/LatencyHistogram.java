@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图，记录不加锁
+ * <p>
+ * 与HdrHistogram相同的对数-线性分桶：每个2的幂区间再等分为16个桶，相对误差不超过1/16，
+ * 最大记录约18分钟(2^40纳秒)，超过的记录在最后一个桶
+ * <p>
+ * 每个桶是第一次记录时创建的LongAdder：多个线程记录到同一个桶时分散到不同的单元，不争用同一个缓存行，
+ * 没有记录过的桶不占用内存
+ *
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicReferenceArray<LongAdder> counts = new AtomicReferenceArray<>(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 纳秒
+     */
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        bucket(bucketIndex(value)).increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * 生成快照，记录与快照并发时快照可能不完全一致
+     *
+     * @return LatencySnapshot
+     */
+    LatencySnapshot snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            LongAdder bucket = counts.get(i);
+            snapshot[i] = bucket == null ? 0 : bucket.sum();
+            total += snapshot[i];
+        }
+        long maxValue = max.get();
+        return new LatencySnapshot(total, total == 0 ? 0 : (double) sum.sum() / count.sum(),
+            percentile(snapshot, total, 0.5, maxValue),
+            percentile(snapshot, total, 0.9, maxValue),
+            percentile(snapshot, total, 0.99, maxValue),
+            percentile(snapshot, total, 0.999, maxValue),
+            maxValue);
+    }
+
+    private LongAdder bucket(int index) {
+        LongAdder bucket = counts.get(index);
+        if (bucket == null) {
+            counts.compareAndSet(index, null, new LongAdder());
+            bucket = counts.get(index);
+        }
+        return bucket;
+    }
+
+    private static long percentile(long[] snapshot, long total, double quantile, long maxValue) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long cumulative = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank) {
+                return Math.min(bucketUpperBound(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        int mantissa = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + mantissa + 1) << shift) - 1;
+    }
+}
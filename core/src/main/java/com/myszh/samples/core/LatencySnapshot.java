@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import lombok.Value;
+
+/**
+ * 耗时分布快照，单位纳秒，百分位数的相对误差不超过1/16
+ *
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+@Value
+public class LatencySnapshot {
+
+    /**
+     * 记录次数
+     */
+    long count;
+
+    /**
+     * 平均耗时
+     */
+    double mean;
+
+    /**
+     * 50%
+     */
+    long p50;
+
+    /**
+     * 90%
+     */
+    long p90;
+
+    /**
+     * 99%
+     */
+    long p99;
+
+    /**
+     * 99.9%
+     */
+    long p999;
+
+    /**
+     * 最大耗时
+     */
+    long max;
+}
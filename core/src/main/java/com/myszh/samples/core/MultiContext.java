@@ -4,12 +4,22 @@
 
 package com.myszh.samples.core;
 
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.function.Supplier;
 
 /**
  * 多上下文
+ * <p>
+ * 支持父子层级：查找时先找自己，找不到再找父上下文，写入只写自己。
+ * 公共的上下文(租户配置、国际化、开关等)可以构建一次，冻结后作为父上下文在多个线程、多个请求之间共享，
+ * 每个请求只需要在子上下文中添加自己的数据，不需要复制父上下文
  *
  * @author LuoQuan
  * @since 2022/6/12
@@ -18,7 +28,11 @@ public class MultiContext {
     /**
      * 内部多上下文map
      */
-    private final Map<String, Object> multiContext = new HashMap<>();
+    private final ContextMap multiContext;
+
+    private MultiContext(MultiContext parent) {
+        this.multiContext = new ContextMap(parent == null ? null : parent.multiContext);
+    }
 
     /**
      * 静态方法构造
@@ -26,7 +40,46 @@ public class MultiContext {
      * @return MultiContext
      */
     public static MultiContext of() {
-        return new MultiContext();
+        return new MultiContext(null);
+    }
+
+    /**
+     * 构造子上下文，查找不到的名称会到父上下文中查找
+     *
+     * @param parent 父上下文，建议先冻结{@link #freeze()}
+     * @return MultiContext
+     */
+    public static MultiContext of(MultiContext parent) {
+        Objects.requireNonNull(parent);
+        return new MultiContext(parent);
+    }
+
+    /**
+     * 构造以当前上下文为父上下文的子上下文
+     *
+     * @return MultiContext
+     */
+    public MultiContext child() {
+        return new MultiContext(this);
+    }
+
+    /**
+     * 冻结，之后不能再添加上下文，懒加载的上下文切换为线程安全的方式，可以在多个线程之间共享
+     *
+     * @return MultiContext
+     */
+    public MultiContext freeze() {
+        multiContext.freeze();
+        return this;
+    }
+
+    /**
+     * 是否已冻结
+     *
+     * @return true, false
+     */
+    public boolean isFrozen() {
+        return multiContext.frozen;
     }
 
     /**
@@ -52,14 +105,157 @@ public class MultiContext {
 
     /**
      * 添加上下文提供者，使用这种方式可以达到懒加载的效果
+     * <p>
+     * 提供者在第一次使用时执行，结果会被缓存，同一个MultiContext中最多执行一次(非线程安全)
      *
      * @param name            名称
      * @param contextProvider 上下文提供者
      * @return MultiContext
      */
     public MultiContext add(String name, Supplier<?> contextProvider) {
-        multiContext.put(name, contextProvider);
+        return add(name, contextProvider, false);
+    }
+
+    /**
+     * 添加上下文提供者，使用这种方式可以达到懒加载的效果
+     *
+     * @param name            名称
+     * @param contextProvider 上下文提供者
+     * @param threadSafe      是否线程安全，为true时多线程同时使用也只会执行一次
+     * @return MultiContext
+     */
+    public MultiContext add(String name, Supplier<?> contextProvider, boolean threadSafe) {
+        multiContext.put(name, new LazyContext(contextProvider, threadSafe));
         return this;
     }
 
+    /**
+     * 获取已经执行过的上下文提供者名称，可以用来发现模板中没有用到的上下文
+     *
+     * @return Set
+     */
+    public Set<String> getTriggeredProviders() {
+        Set<String> names = new LinkedHashSet<>();
+        multiContext.local.forEach((name, context) -> {
+            if (context instanceof LazyContext && ((LazyContext) context).loaded) {
+                names.add(name);
+            }
+        });
+        return names;
+    }
+
+    /**
+     * 支持父子层级的map，MapAccessor、占位符解析都通过get/containsKey查找，自然支持层级
+     */
+    private static final class ContextMap extends AbstractMap<String, Object> {
+
+        private final Map<String, Object> local = new HashMap<>();
+
+        private final ContextMap parent;
+
+        private volatile boolean frozen;
+
+        ContextMap(ContextMap parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Object value = local.get(key);
+            if (value != null || local.containsKey(key) || parent == null) {
+                return value;
+            }
+            return parent.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return local.containsKey(key) || (parent != null && parent.containsKey(key));
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            if (frozen) {
+                throw new IllegalStateException("MultiContext is frozen, can not add context '" + key + "'");
+            }
+            return local.put(key, value);
+        }
+
+        /**
+         * 父子合并后的只读视图，子上下文覆盖父上下文
+         */
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            if (parent == null) {
+                return Collections.unmodifiableMap(local).entrySet();
+            }
+            Map<String, Object> merged = new LinkedHashMap<>(parent);
+            merged.putAll(local);
+            return Collections.unmodifiableMap(merged).entrySet();
+        }
+
+        void freeze() {
+            local.replaceAll((name, context) -> context instanceof LazyContext
+                ? ((LazyContext) context).toThreadSafe()
+                : context);
+            frozen = true;
+        }
+    }
+
+    /**
+     * 懒加载的上下文，提供者最多执行一次
+     */
+    private static final class LazyContext implements Supplier<Object> {
+
+        private final boolean threadSafe;
+
+        private final Supplier<?> provider;
+
+        private Object value;
+
+        private volatile boolean loaded;
+
+        LazyContext(Supplier<?> provider, boolean threadSafe) {
+            this.provider = provider;
+            this.threadSafe = threadSafe;
+        }
+
+        @Override
+        public Object get() {
+            if (!loaded) {
+                if (threadSafe) {
+                    synchronized (this) {
+                        if (!loaded) {
+                            load();
+                        }
+                    }
+                } else {
+                    load();
+                }
+            }
+            return value;
+        }
+
+        /**
+         * 转换为线程安全的懒加载上下文，已经加载过的值会保留
+         *
+         * @return LazyContext
+         */
+        LazyContext toThreadSafe() {
+            if (threadSafe) {
+                return this;
+            }
+            LazyContext lazyContext = new LazyContext(provider, true);
+            if (loaded) {
+                lazyContext.value = value;
+                lazyContext.loaded = true;
+            }
+            return lazyContext;
+        }
+
+        private void load() {
+            value = provider.get();
+            loaded = true;
+        }
+    }
 }
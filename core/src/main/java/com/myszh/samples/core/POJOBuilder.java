@@ -4,8 +4,14 @@
 
 package com.myszh.samples.core;
 
+import com.myszh.samples.core.exception.BuildException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * POJO（Plain Ordinary Java Object）简单的Java对象构建者
@@ -35,4 +41,63 @@ public interface POJOBuilder {
     default <T> T build(Class<T> type, Object buildContext, String definitionName) {
         return build(type, buildContext, definitionName, null);
     }
+
+    /**
+     * 使用同一个定义批量构建POJO实例，单个实例构建失败不影响其他实例，
+     * 异常({@link BuildException})记录在对应的结果中
+     * <p>
+     * 默认实现逐个调用{@link #build(Class, Object, String, Predicate)}，实现类可以在批量之间共享模板、配置等
+     *
+     * @param type           POJO类型
+     * @param buildContexts  构建过程中的上下文
+     * @param definitionName 定义如何构建POJO实例的模板名称
+     * @param beforeBuild    构建之前的回调，返回false时对应的结果值为null
+     * @param executor       执行器，为null时在当前线程顺序构建
+     * @param <T>            POJO泛型参数
+     * @return 按上下文顺序排列的结果
+     */
+    default <T> List<BatchResult<T>> buildAll(Class<T> type, List<?> buildContexts, String definitionName,
+        Predicate<Map<String, Object>> beforeBuild, Executor executor) {
+        List<?> items = buildContexts instanceof RandomAccess ? buildContexts : new ArrayList<>(buildContexts);
+        return Batches.execute(items,
+            buildContext -> build(type, buildContext, definitionName, beforeBuild),
+            (buildContext, e) -> e instanceof BuildException ? (BuildException) e
+                : new BuildException("build POJO[" + type.getName() + "] error!!", e),
+            executor);
+    }
+
+    /**
+     * @see #buildAll(Class, List, String, Predicate, Executor)
+     */
+    default <T> List<BatchResult<T>> buildAll(Class<T> type, List<?> buildContexts, String definitionName) {
+        return buildAll(type, buildContexts, definitionName, null, null);
+    }
+
+    /**
+     * 使用同一个定义按流构建POJO实例，元素在消费时才构建。与{@link #buildAll}一样，
+     * 单个实例构建失败不会中断流，异常({@link BuildException})记录在对应的结果中
+     * <p>
+     * 默认实现逐个调用{@link #build(Class, Object, String, Predicate)}
+     *
+     * @param type           POJO类型
+     * @param buildContexts  构建过程中的上下文
+     * @param definitionName 定义如何构建POJO实例的模板名称
+     * @param beforeBuild    构建之前的回调，返回false时对应的结果值为null
+     * @param <T>            POJO泛型参数
+     * @return 结果流，下标是上下文在输入流中的位置
+     */
+    default <T> Stream<BatchResult<T>> buildStream(Class<T> type, Stream<?> buildContexts, String definitionName,
+        Predicate<Map<String, Object>> beforeBuild) {
+        return Batches.stream(buildContexts,
+            buildContext -> build(type, buildContext, definitionName, beforeBuild),
+            (buildContext, e) -> e instanceof BuildException ? (BuildException) e
+                : new BuildException("build POJO[" + type.getName() + "] error!!", e));
+    }
+
+    /**
+     * @see #buildStream(Class, Stream, String, Predicate)
+     */
+    default <T> Stream<BatchResult<T>> buildStream(Class<T> type, Stream<?> buildContexts, String definitionName) {
+        return buildStream(type, buildContexts, definitionName, null);
+    }
 }
@@ -7,6 +7,7 @@ package com.myszh.samples.core;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * POJO属性值模板提供者
@@ -41,4 +42,14 @@ public interface POJOPropertyValueTemplateProvider {
         return Collections.emptyMap();
     }
 
+    /**
+     * 注册模板变更监听器，使用者(如{@link DefaultPOJOBuilder})据此清理缓存
+     * <p>
+     * 支持变更的实现类在模板变更后回调监听器，参数为变更属性的父节点名称(即parentPropertyName)，
+     * null表示全部变更。默认不支持变更，不会回调
+     *
+     * @param listener 监听器
+     */
+    default void addChangeListener(Consumer<String> listener) {
+    }
 }
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import static com.myszh.samples.core.TemplatePlan.PLACEHOLDER_PREFIX;
+import static com.myszh.samples.core.TemplatePlan.PLACEHOLDER_SUFFIX;
+import static com.myszh.samples.core.TemplatePlan.VALUE_SEPARATOR;
+
+/**
+ * 占位符扫描器，按字符下标扫描，不生成中间子串(查找用的key除外)，不递归创建执行计划
+ * <p>
+ * 语义与PropertyPlaceholderHelper一致：默认值 ${name:zhang san}、嵌套 ${name${age}}、
+ * 值本身包含占位符时继续解析、严格模式无法解析时抛出异常、非严格模式原样保留。
+ * 另外支持转义：模板文本中 ${ 之前连续的{@value #ESCAPE_CHARACTER}每两个输出一个，剩下一个时 ${ 作为普通文本输出，
+ * 如 \${name} 输出 ${name}，C:\\${dir} 输出 C:\ 加上dir的值；不在 ${ 之前的转义字符原样输出。
+ * 转义只作用于模板文本(包括其中的默认值)，从上下文中解析到的值中的 \${ 原样保留，不解析也不去掉转义字符
+ *
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+final class PlaceholderScanner {
+
+    /**
+     * 转义字符
+     */
+    static final char ESCAPE_CHARACTER = '\\';
+
+    private PlaceholderScanner() {
+    }
+
+    /**
+     * 占位符前缀之前连续的转义字符个数，奇数个时前缀被转义
+     *
+     * @param text  文本
+     * @param from  开始位置(包含)，不向前越过
+     * @param index 占位符前缀的位置
+     * @return 转义字符个数
+     */
+    static int escapeCount(CharSequence text, int from, int index) {
+        int count = 0;
+        for (int i = index - 1; i >= from && text.charAt(i) == ESCAPE_CHARACTER; i--) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 下标位置的占位符前缀是否被转义：之前有奇数个连续的转义字符
+     *
+     * @param text  文本
+     * @param from  开始位置(包含)，不向前越过
+     * @param index 占位符前缀的位置
+     * @return true, false
+     */
+    static boolean isEscaped(CharSequence text, int from, int index) {
+        return (escapeCount(text, from, index) & 1) == 1;
+    }
+
+    /**
+     * 追加占位符前缀之前的文本，转义字符每两个输出一个，转义占位符前缀的最后一个不输出
+     *
+     * @param text  文本
+     * @param from  开始位置(包含)
+     * @param index 占位符前缀的位置
+     * @param out   输出
+     * @return 占位符前缀是否被转义
+     */
+    static boolean appendUnescaped(CharSequence text, int from, int index, StringBuilder out) {
+        int escapes = escapeCount(text, from, index);
+        out.append(text, from, index - escapes);
+        for (int i = escapes / 2; i > 0; i--) {
+            out.append(ESCAPE_CHARACTER);
+        }
+        return (escapes & 1) == 1;
+    }
+
+    /**
+     * 查找没有转义的占位符前缀
+     *
+     * @param text 文本
+     * @param from 开始位置(包含)
+     * @param to   结束位置(不包含)
+     * @return 前缀位置，找不到返回-1
+     */
+    static int indexOfPlaceholder(CharSequence text, int from, int to) {
+        for (int i = from; i < to - 1; i++) {
+            if (text.charAt(i) == '$' && text.charAt(i + 1) == '{' && !isEscaped(text, from, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 查找占位符结束位置，与PropertyPlaceholderHelper保持一致，按{、}配对
+     *
+     * @param text       文本
+     * @param startIndex 占位符开始位置
+     * @param to         结束位置(不包含)
+     * @return 结束符位置，找不到返回-1
+     */
+    static int findPlaceholderEndIndex(CharSequence text, int startIndex, int to) {
+        int index = startIndex + PLACEHOLDER_PREFIX.length();
+        int withinNestedPlaceholder = 0;
+        while (index < to) {
+            char c = text.charAt(index);
+            if (c == '}') {
+                if (withinNestedPlaceholder == 0) {
+                    return index;
+                }
+                withinNestedPlaceholder--;
+            } else if (c == '{') {
+                withinNestedPlaceholder++;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * 解析文本中的全部占位符
+     *
+     * @param text         文本
+     * @param state        执行状态
+     * @param template     当前正在解析的模板，用于异常信息
+     * @param templateText 是否模板文本，只有模板文本处理转义
+     * @return 解析结果
+     */
+    static String resolve(String text, TemplatePlan.RenderState state, String template, boolean templateText) {
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        resolve(text, 0, text.length(), state, template, out, templateText);
+        return out.toString();
+    }
+
+    /**
+     * 解析文本区间中的全部占位符，结果追加到out
+     *
+     * @param text         文本
+     * @param from         开始位置(包含)
+     * @param to           结束位置(不包含)
+     * @param state        执行状态
+     * @param template     当前正在解析的模板，用于异常信息
+     * @param out          输出
+     * @param templateText 是否模板文本，模板文本去掉转义字符，其他文本原样保留转义的占位符
+     */
+    static void resolve(CharSequence text, int from, int to, TemplatePlan.RenderState state, String template,
+        StringBuilder out, boolean templateText) {
+        int position = from;
+        while (position < to) {
+            int startIndex = indexOf(text, position, to);
+            if (startIndex == -1) {
+                break;
+            }
+            if (isEscaped(text, position, startIndex)) {
+                if (templateText) {
+                    appendUnescaped(text, position, startIndex, out);
+                } else {
+                    out.append(text, position, startIndex);
+                }
+                out.append(PLACEHOLDER_PREFIX);
+                position = startIndex + PLACEHOLDER_PREFIX.length();
+                continue;
+            }
+            int endIndex = findPlaceholderEndIndex(text, startIndex, to);
+            if (endIndex == -1) {
+                break;
+            }
+            if (templateText) {
+                appendUnescaped(text, position, startIndex, out);
+            } else {
+                out.append(text, position, startIndex);
+            }
+            resolvePlaceholder(text, startIndex, endIndex, state, template, out, templateText);
+            position = endIndex + PLACEHOLDER_SUFFIX.length();
+        }
+        out.append(text, position, to);
+    }
+
+    /**
+     * 查找占位符的值：先使用完整的key，找不到时使用分隔符之前的key，再找不到使用分隔符之后的默认值
+     *
+     * @param state        执行状态
+     * @param key          key，可能包含默认值
+     * @param template     当前正在解析的模板，用于异常信息
+     * @param templateText key是否来自模板文本，决定默认值是否处理转义
+     * @return 解析结果，非严格模式下无法解析时返回null
+     */
+    static String resolveValue(TemplatePlan.RenderState state, String key, String template, boolean templateText) {
+        String value = state.resolvePlaceholder(key);
+        if (value != null) {
+            return complete(state, key, value, template, false);
+        }
+        int separatorIndex = key.indexOf(VALUE_SEPARATOR);
+        if (separatorIndex != -1) {
+            value = state.resolvePlaceholder(key.substring(0, separatorIndex));
+            if (value != null) {
+                return complete(state, key, value, template, false);
+            }
+            value = key.substring(separatorIndex + VALUE_SEPARATOR.length());
+        }
+        return complete(state, key, value, template, templateText);
+    }
+
+    /**
+     * 值本身包含占位符时继续解析，找不到值时严格模式抛出异常
+     *
+     * @param state        执行状态
+     * @param key          key
+     * @param value        值
+     * @param template     当前正在解析的模板，用于异常信息
+     * @param templateText 值是否来自模板文本(默认值)，从上下文中解析到的值不处理转义
+     * @return 解析结果，非严格模式下无法解析时返回null
+     */
+    static String complete(TemplatePlan.RenderState state, String key, String value, String template,
+        boolean templateText) {
+        if (value != null) {
+            return value.contains(PLACEHOLDER_PREFIX) ? resolve(value, state, template, templateText) : value;
+        }
+        if (state.isStrict()) {
+            throw new IllegalArgumentException(
+                "Could not resolve placeholder '" + key + "' in value \"" + template + "\"");
+        }
+        return null;
+    }
+
+    private static void resolvePlaceholder(CharSequence text, int startIndex, int endIndex,
+        TemplatePlan.RenderState state, String template, StringBuilder out, boolean templateText) {
+        int keyStart = startIndex + PLACEHOLDER_PREFIX.length();
+        String placeholder = text.subSequence(keyStart, endIndex).toString();
+        state.enter(placeholder);
+        String key = placeholder;
+        if (indexOfPlaceholder(text, keyStart, endIndex) != -1) {
+            StringBuilder keyBuilder = new StringBuilder(endIndex - keyStart + 16);
+            resolve(text, keyStart, endIndex, state, template, keyBuilder, templateText);
+            key = keyBuilder.toString();
+        }
+        String value = resolveValue(state, key, template, templateText);
+        state.exit(placeholder);
+        if (value == null) {
+            out.append(text, startIndex, endIndex + PLACEHOLDER_SUFFIX.length());
+        } else {
+            out.append(value);
+        }
+    }
+
+    /**
+     * 查找占位符前缀，包括转义的
+     */
+    private static int indexOf(CharSequence text, int from, int to) {
+        for (int i = from; i < to - 1; i++) {
+            if (text.charAt(i) == '$' && text.charAt(i + 1) == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 基于Properties的属性值模板提供者
+ * <p>
+ * 创建时把Properties复制为不可变的索引，查找不加锁(Properties是Hashtable，每次查找都要竞争同一个锁)，
+ * 按父节点名称获取全部子节点也是一次map查找。
+ * 复制之后Properties的修改不可见，需要调用{@link #reload(Properties)}整体替换，并通知变更的父节点
+ *
+ * @author LuoQuan
+ * @since 2022/6/26
+ */
+public class PropertiesValueTemplateProvider implements POJOPropertyValueTemplateProvider {
+
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile TemplateIndex index;
+
+    public PropertiesValueTemplateProvider(Properties properties) {
+        Objects.requireNonNull(properties);
+        this.index = TemplateIndex.of(toMap(properties));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 与Properties#getProperty一致，只按属性名称查找
+     */
+    @Override
+    public String getValueTemplate(String parentPropertyName, String propertyName) {
+        return index.get(propertyName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getValueTemplate(String propertyName) {
+        return index.getChildren(propertyName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addChangeListener(Consumer<String> listener) {
+        Objects.requireNonNull(listener);
+        listeners.add(listener);
+    }
+
+    /**
+     * 重新加载，新索引创建完成后整体替换，查找要么看到旧的全部模板，要么看到新的全部模板
+     *
+     * @param properties 新的模板
+     */
+    public void reload(Properties properties) {
+        Objects.requireNonNull(properties);
+        TemplateIndex newIndex = TemplateIndex.of(toMap(properties));
+        TemplateIndex oldIndex;
+        synchronized (this) {
+            oldIndex = index;
+            index = newIndex;
+        }
+        oldIndex.changedParents(newIndex).forEach(parent -> listeners.forEach(listener -> listener.accept(parent)));
+    }
+
+    private static Map<String, String> toMap(Properties properties) {
+        Map<String, String> templates = new HashMap<>();
+        // 包括Properties的defaults
+        for (String name : properties.stringPropertyNames()) {
+            templates.put(name, properties.getProperty(name));
+        }
+        return templates;
+    }
+}
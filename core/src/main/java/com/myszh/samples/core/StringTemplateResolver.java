@@ -4,33 +4,58 @@
 
 package com.myszh.samples.core;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.myszh.samples.core.exception.StringResolveException;
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
 import org.springframework.context.expression.MapAccessor;
 import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.ParserContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.TypedValue;
-import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.common.CompositeStringExpression;
+import org.springframework.expression.spel.CodeFlow;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.SpelNodeImpl;
+import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.expression.spel.support.StandardTypeConverter;
 import org.springframework.util.Assert;
-import org.springframework.util.PropertyPlaceholderHelper;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.PropertyPlaceholderHelper.PlaceholderResolver;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
 /**
@@ -51,19 +76,34 @@ public class StringTemplateResolver {
      */
     private final static StringTemplateResolver sharedInstance = new StringTemplateResolver();
     /**
-     * 严格模式解析器
+     * 编译后的SpEL读取Map中的属性值时抛出的异常
      */
-    private final PropertyPlaceholderHelper strictHelper = createHelper(false);
+    private static final String RESOLVE_EXCEPTION = Type.getInternalName(StringResolveException.class);
 
     /**
-     * 非严格模式解析器
+     * SpEL编译模式
      */
-    private final PropertyPlaceholderHelper nonStrictHelper = createHelper(true);
+    private final SpelCompilerMode compilerMode;
 
     /**
-     * 表达式缓存
+     * SpEL解析器
      */
-    private final Map<String, Expression> expressionCache = new ConcurrentHashMap<>(128);
+    private final SpelExpressionParser expressionParser;
+
+    /**
+     * 模板执行计划缓存
+     */
+    private final Cache<String, TemplatePlan> planCache;
+
+    /**
+     * 表达式缓存，key是替换完占位符的文本，需要限制大小
+     */
+    private final Cache<String, Expression> expressionCache;
+
+    /**
+     * 按模板统计，未开启时为null
+     */
+    private final TemplateInstrumentation instrumentation;
 
     /**
      * 缓存所有的bean属性
@@ -77,23 +117,84 @@ public class StringTemplateResolver {
         @Override
         public TypedValue read(EvaluationContext context, Object target, String name) {
             Assert.state(target instanceof Map, "Target must be of type Map");
-            Map<?, ?> dataMap = (Map<?, ?>) target;
-            Object value = dataMap.get(name);
-            if (value == null && !dataMap.containsKey(name)) {
-                throw new StringResolveException(
-                    "Map does not contain a value for key '" + name + "'");
-            }
-            if (value instanceof Supplier) {
-                value = ((Supplier<?>) value).get();
+            return new TypedValue(readMapValue((Map<?, ?>) target, name));
+        }
+
+        /**
+         * 编译模式下与{@link #read}保持一致：key不存在时抛出异常，Supplier返回提供的值。
+         * 生成的类在SpEL自己的包和类加载器中，只能访问public的类型，所以直接生成字节码而不是调用辅助方法
+         */
+        @Override
+        public void generateCode(String propertyName, MethodVisitor mv, CodeFlow cf) {
+            String descriptor = cf.lastDescriptor();
+            if (descriptor == null || !descriptor.equals("Ljava/util/Map")) {
+                if (descriptor == null) {
+                    cf.loadTarget(mv);
+                }
+                CodeFlow.insertCheckCast(mv, "Ljava/util/Map");
             }
-            return new TypedValue(value);
+            Label nonNull = new Label();
+            Label end = new Label();
+            // map -> map, value
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitLdcInsn(propertyName);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/Map", "get",
+                "(Ljava/lang/Object;)Ljava/lang/Object;", true);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitJumpInsn(Opcodes.IFNONNULL, nonNull);
+            // 值为null：key存在时返回null，否则抛出异常
+            mv.visitInsn(Opcodes.SWAP);
+            mv.visitLdcInsn(propertyName);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/Map", "containsKey",
+                "(Ljava/lang/Object;)Z", true);
+            mv.visitJumpInsn(Opcodes.IFNE, end);
+            mv.visitTypeInsn(Opcodes.NEW, RESOLVE_EXCEPTION);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitLdcInsn(missingKeyMessage(propertyName));
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, RESOLVE_EXCEPTION, "<init>", "(Ljava/lang/String;)V", false);
+            mv.visitInsn(Opcodes.ATHROW);
+            // 值不为null：Supplier返回提供的值
+            mv.visitLabel(nonNull);
+            mv.visitInsn(Opcodes.SWAP);
+            mv.visitInsn(Opcodes.POP);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitTypeInsn(Opcodes.INSTANCEOF, "java/util/function/Supplier");
+            mv.visitJumpInsn(Opcodes.IFEQ, end);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, "java/util/function/Supplier");
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/function/Supplier", "get",
+                "()Ljava/lang/Object;", true);
+            mv.visitLabel(end);
         }
     };
 
+    /**
+     * 共享的表达式执行上下文，只在构造时配置，每次执行时传入root对象
+     */
+    private final EvaluationContext evaluationContext = createEvaluationContext();
+
     /**
      * 私有化构造器，单实例对象
      */
     private StringTemplateResolver() {
+        this(new StringTemplateResolverProperties());
+    }
+
+    private StringTemplateResolver(StringTemplateResolverProperties properties) {
+        this.compilerMode = properties.getCompilerMode();
+        // 遇到null,自动增长
+        this.expressionParser = new CompileTrackingParser(new SpelParserConfiguration(
+            compilerMode, StringTemplateResolver.class.getClassLoader(), true, true, Integer.MAX_VALUE));
+        this.planCache = Caffeine.newBuilder()
+            .maximumSize(properties.getPlanCacheMaximumSize())
+            .recordStats()
+            .build();
+        this.expressionCache = Caffeine.newBuilder()
+            .maximumSize(properties.getExpressionCacheMaximumSize())
+            .recordStats()
+            .build();
+        this.instrumentation = properties.isInstrumentationEnabled()
+            ? new TemplateInstrumentation(properties.getInstrumentationMaximumNames())
+            : null;
     }
 
     /**
@@ -105,6 +206,106 @@ public class StringTemplateResolver {
         return sharedInstance;
     }
 
+    /**
+     * 根据配置创建新的实例，缓存等资源不与共享实例共用
+     *
+     * @param properties 配置
+     * @return StringTemplateResolver
+     */
+    public static StringTemplateResolver create(StringTemplateResolverProperties properties) {
+        Objects.requireNonNull(properties);
+        return new StringTemplateResolver(properties);
+    }
+
+    /**
+     * 获取模板执行计划缓存的指标
+     *
+     * @return CacheMetrics
+     */
+    public CacheMetrics getPlanCacheMetrics() {
+        return CacheMetrics.of(planCache);
+    }
+
+    /**
+     * 获取表达式缓存的指标
+     *
+     * @return CacheMetrics
+     */
+    public CacheMetrics getExpressionCacheMetrics() {
+        return CacheMetrics.of(expressionCache);
+    }
+
+    /**
+     * 立即执行缓存待处理的维护(淘汰超出容量的条目)，Caffeine默认异步执行，之后读取的缓存数量是准确的
+     */
+    public void cleanUp() {
+        planCache.cleanUp();
+        expressionCache.cleanUp();
+    }
+
+    /**
+     * 获取按模板的统计
+     *
+     * @return TemplateInstrumentation，未开启({@link StringTemplateResolverProperties#isInstrumentationEnabled()})时为null
+     */
+    public TemplateInstrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * 获取当前缓存中所有SpEL表达式的编译情况
+     *
+     * @return List
+     */
+    public List<ExpressionMetrics> getExpressionMetrics() {
+        List<ExpressionMetrics> metrics = new ArrayList<>();
+        planCache.asMap().forEach((template, plan) ->
+            plan.getExpressions().forEach(expr -> metrics.add(toExpressionMetrics(template, expr))));
+        expressionCache.asMap().forEach((template, expr) -> {
+            if (expr instanceof CompositeStringExpression) {
+                for (Expression part : ((CompositeStringExpression) expr).getExpressions()) {
+                    if (part instanceof SpelExpression) {
+                        metrics.add(toExpressionMetrics(template, part));
+                    }
+                }
+            } else if (expr instanceof SpelExpression) {
+                metrics.add(toExpressionMetrics(template, expr));
+            }
+        });
+        return metrics;
+    }
+
+    /**
+     * 读取编译时记录的结果，不会触发编译，也不影响SpEL的编译失败计数
+     */
+    private ExpressionMetrics toExpressionMetrics(String template, Expression expression) {
+        boolean compiled = expression instanceof CompileTrackingExpression
+            && ((CompileTrackingExpression) expression).isCompiled();
+        return new ExpressionMetrics(template, expression.getExpressionString(), compilerMode, compiled);
+    }
+
+    /**
+     * 读取Map中的值，如果是Supplier则返回Supplier提供的值，编译后的SpEL生成相同逻辑的字节码
+     *
+     * @param map  map
+     * @param name key
+     * @return Object
+     */
+    private static Object readMapValue(Map<?, ?> map, String name) {
+        Object value = map.get(name);
+        if (value == null && !map.containsKey(name)) {
+            throw new StringResolveException(missingKeyMessage(name));
+        }
+        if (value instanceof Supplier) {
+            value = ((Supplier<?>) value).get();
+        }
+        return value;
+    }
+
+    private static String missingKeyMessage(String name) {
+        return "Map does not contain a value for key '" + name + "'";
+    }
+
     /**
      * 解析字符串模板(非严格模式)
      *
@@ -154,41 +355,283 @@ public class StringTemplateResolver {
      * @return String
      */
     public String parse(String template, Object context, boolean isStrict) {
-        // 先解析占位符
-        String value = replacePlaceholders(template, context, isStrict);
-        // 解析表达式
-        return evaluate(value, context);
+        Assert.notNull(template, "'template' must not be null");
+        return render(template, null, context, isStrict);
     }
 
     /**
-     * 创建占位符解析器
+     * 解析模板(非严格模式)，只有一个SpEL表达式的模板(如 #{order.amount})返回表达式的原始值，
+     * 调用方可以直接使用或者按目标类型转换，不需要先转换为字符串再解析
      *
-     * @param ignoreUnresolvablePlaceholders 是否忽略无法解析的占位符
-     * @return PropertyPlaceholderHelper
+     * @param template 模板
+     * @param context  上下文，支持MultiContext
+     * @return 单个表达式的值，其他模板返回String
      */
-    private PropertyPlaceholderHelper createHelper(boolean ignoreUnresolvablePlaceholders) {
-        return new PropertyPlaceholderHelper(
-            "${", "}", ":", ignoreUnresolvablePlaceholders);
+    public Object parseValue(String template, Object context) {
+        return parseValue(template, context, false);
     }
 
     /**
-     * 解析表达式
+     * 解析模板，只有一个SpEL表达式的模板返回表达式的原始值
+     *
+     * @param template 模板
+     * @param context  上下文，支持MultiContext
+     * @param isStrict 是否严格模式
+     * @return 单个表达式的值，其他模板返回String
+     */
+    public Object parseValue(String template, Object context, boolean isStrict) {
+        Assert.notNull(template, "'template' must not be null");
+        return render(template, null, unwrap(context), isStrict, TemplatePlan::renderValue);
+    }
+
+    /**
+     * 解析字符串模板(非严格模式)，结果直接写入out，不生成中间字符串
+     *
+     * @param template 模板
+     * @param context  上下文，支持MultiContext
+     * @param out      输出，如Writer、StringBuilder
+     * @param <A>      输出类型
+     * @return out
+     */
+    public <A extends Appendable> A render(String template, Object context, A out) {
+        return render(template, context, false, out);
+    }
+
+    /**
+     * 解析字符串模板，结果直接写入out，不生成中间字符串
+     *
+     * @param template 模板
+     * @param context  上下文，支持MultiContext
+     * @param isStrict 是否严格模式
+     * @param out      输出，如Writer、StringBuilder
+     * @param <A>      输出类型
+     * @return out
+     */
+    public <A extends Appendable> A render(String template, Object context, boolean isStrict, A out) {
+        Assert.notNull(template, "'template' must not be null");
+        Assert.notNull(out, "'out' must not be null");
+        if (instrumentation == null) {
+            try {
+                getPlan(template).render(new RenderState(unwrap(context), isStrict), out);
+            } catch (IOException e) {
+                throw new StringResolveException("Write template[" + template + "] failed", e);
+            }
+            return out;
+        }
+
+        TimedRenderState state = new TimedRenderState(unwrap(context), isStrict);
+        try {
+            getPlan(template, state).render(state, out);
+            state.succeed();
+        } catch (IOException e) {
+            throw new StringResolveException("Write template[" + template + "] failed", e);
+        } finally {
+            state.record(template);
+        }
+        return out;
+    }
+
+    /**
+     * 解析字符串模板(非严格模式)，结果以UTF-8编码直接写入buffer
+     *
+     * @param template 模板
+     * @param context  上下文，支持MultiContext
+     * @param buffer   输出，剩余空间不足时抛出BufferOverflowException
+     * @return buffer
+     */
+    public ByteBuffer render(String template, Object context, ByteBuffer buffer) {
+        return render(template, context, false, buffer);
+    }
+
+    /**
+     * 解析字符串模板，结果以UTF-8编码直接写入buffer
+     *
+     * @param template 模板
+     * @param context  上下文，支持MultiContext
+     * @param isStrict 是否严格模式
+     * @param buffer   输出，剩余空间不足时抛出BufferOverflowException
+     * @return buffer
+     */
+    public ByteBuffer render(String template, Object context, boolean isStrict, ByteBuffer buffer) {
+        Utf8ByteBufferAppendable out = render(template, context, isStrict,
+            new Utf8ByteBufferAppendable(buffer));
+        out.finish();
+        return buffer;
+    }
+
+    /**
+     * 批量解析(非严格模式)：同一个模板对多个上下文在当前线程顺序解析
+     *
+     * @param template 模板
+     * @param contexts 上下文，支持MultiContext
+     * @return 按上下文顺序排列的结果
+     * @see #parseAll(String, List, boolean, Executor)
+     */
+    public List<BatchResult<String>> parseAll(String template, List<?> contexts) {
+        return parseAll(template, contexts, false, null);
+    }
+
+    /**
+     * 批量解析(非严格模式)
+     *
+     * @param template 模板
+     * @param contexts 上下文，支持MultiContext
+     * @param executor 执行器
+     * @return 按上下文顺序排列的结果
+     * @see #parseAll(String, List, boolean, Executor)
+     */
+    public List<BatchResult<String>> parseAll(String template, Stream<?> contexts, Executor executor) {
+        return parseAll(template, contexts.collect(Collectors.toList()), false, executor);
+    }
+
+    /**
+     * 批量解析(非严格模式)
+     *
+     * @param template 模板
+     * @param contexts 上下文，支持MultiContext
+     * @param executor 执行器
+     * @return 按上下文顺序排列的结果
+     * @see #parseAll(String, List, boolean, Executor)
+     */
+    public List<BatchResult<String>> parseAll(String template, List<?> contexts, Executor executor) {
+        return parseAll(template, contexts, false, executor);
+    }
+
+    /**
+     * 批量解析：模板只编译一次，多个上下文分块后在executor中并行解析。
+     * 单个上下文解析失败不影响其他上下文，异常记录在对应的结果中
+     *
+     * @param template 模板
+     * @param contexts 上下文，支持MultiContext
+     * @param isStrict 是否严格模式
+     * @param executor 执行器，为null时在当前线程顺序解析，执行器拒绝时在当前线程解析
+     * @return 按上下文顺序排列的结果
+     */
+    public List<BatchResult<String>> parseAll(String template, List<?> contexts, boolean isStrict,
+        Executor executor) {
+        Assert.notNull(template, "'template' must not be null");
+        Assert.notNull(contexts, "'contexts' must not be null");
+        TemplatePlan plan = getPlan(template);
+        List<?> items = contexts instanceof RandomAccess ? contexts : new ArrayList<>(contexts);
+        return Batches.execute(items,
+            context -> render(template, plan, unwrap(context), isStrict),
+            (context, e) -> e instanceof StringResolveException ? (StringResolveException) e
+                : new StringResolveException("Parse template[" + template + "] failed", e),
+            executor);
+    }
+
+    /**
+     * 多上下文使用内部的map作为上下文
      *
-     * @param value   表达式
      * @param context 上下文
+     * @return Object
+     */
+    private static Object unwrap(Object context) {
+        if (context instanceof MultiContext) {
+            return ((MultiContext) context).getMultiContext();
+        }
+        return context;
+    }
+
+    /**
+     * 执行模板，开启统计时记录耗时
+     *
+     * @param template 模板
+     * @param plan     已经获取的执行计划，为null时从缓存获取
+     * @param context  上下文
+     * @param isStrict 是否严格模式
      * @return String
      */
-    private String evaluate(String value, Object context) {
-        if (!StringUtils.hasLength(value)) {
+    private String render(String template, TemplatePlan plan, Object context, boolean isStrict) {
+        return render(template, plan, context, isStrict, TemplatePlan::render);
+    }
+
+    /**
+     * 执行模板，开启统计时记录耗时
+     *
+     * @param template 模板
+     * @param plan     已经获取的执行计划，为null时从缓存获取
+     * @param context  上下文
+     * @param isStrict 是否严格模式
+     * @param renderer (执行计划, 执行状态) -> 结果
+     * @param <R>      结果类型
+     * @return 结果
+     */
+    private <R> R render(String template, TemplatePlan plan, Object context, boolean isStrict,
+        BiFunction<TemplatePlan, RenderState, R> renderer) {
+        if (instrumentation == null) {
+            return renderer.apply(plan == null ? getPlan(template) : plan, new RenderState(context, isStrict));
+        }
+
+        TimedRenderState state = new TimedRenderState(context, isStrict);
+        try {
+            R value = renderer.apply(plan == null ? getPlan(template, state) : plan, state);
+            state.succeed();
             return value;
+        } finally {
+            state.record(template);
         }
-        StandardEvaluationContext exprContext = new StandardEvaluationContext(context);
+    }
+
+    /**
+     * 获取模板执行计划
+     *
+     * @param template 模板
+     * @return TemplatePlan
+     */
+    TemplatePlan getPlan(String template) {
+        return planCache.get(template, key -> TemplatePlan.compile(key, expressionParser));
+    }
+
+    private TemplatePlan getPlan(String template, TimedRenderState state) {
+        state.cacheHit = true;
+        return planCache.get(template, key -> {
+            state.cacheHit = false;
+            return TemplatePlan.compile(key, expressionParser);
+        });
+    }
+
+    /**
+     * 从快照读取模板执行计划并放入缓存，之后解析这个模板不需要再编译
+     *
+     * @param in      输入
+     * @param strings 字符串表
+     * @see TemplateSnapshot
+     */
+    void loadPlan(ByteBuffer in, String[] strings) {
+        TemplatePlan plan = TemplatePlan.readFrom(in, strings, expressionParser);
+        planCache.put(plan.getTemplate(), plan);
+    }
+
+    /**
+     * 创建表达式执行上下文，所有延迟初始化的组件在这里提前初始化，之后只读，可以多线程共享
+     *
+     * @return EvaluationContext
+     */
+    private EvaluationContext createEvaluationContext() {
+        StandardEvaluationContext exprContext = new StandardEvaluationContext();
         exprContext.setTypeConverter(
             new StandardTypeConverter(DefaultConversionService::getSharedInstance));
         exprContext.addPropertyAccessor(mapAccessor);
+        exprContext.getConstructorResolvers();
+        exprContext.getMethodResolvers();
+        exprContext.getTypeLocator();
+        return exprContext;
+    }
 
+    /**
+     * 解析表达式
+     *
+     * @param value   表达式
+     * @param context 上下文
+     * @return String
+     */
+    private String evaluate(String value, Object context) {
+        if (!StringUtils.hasLength(value) || !value.contains(TemplatePlan.EXPRESSION_PREFIX)) {
+            return value;
+        }
         return Optional.of(getExpression(value))
-            .map(expr -> expr.getValue(exprContext))
+            .map(expr -> expr.getValue(evaluationContext, context))
             .map(Object::toString)
             .orElse(null);
     }
@@ -200,32 +643,8 @@ public class StringTemplateResolver {
      * @return Expression
      */
     private Expression getExpression(String value) {
-        Expression expr = expressionCache.get(value);
-        if (expr == null) {
-            expr = new SpelExpressionParser(
-                // 遇到null,自动增长
-                new SpelParserConfiguration(true, true))
-                .parseExpression(value, new TemplateParserContext());
-            expressionCache.put(value, expr);
-        }
-        return expr;
-    }
-
-    /**
-     * 解析占位符
-     *
-     * @param template 模板
-     * @param context  上下文
-     * @param isStrict 是否严格模式
-     * @return String
-     */
-    private String replacePlaceholders(String template, Object context, boolean isStrict) {
-        PlaceholderResolver placeholderResolver = builderPlaceholderResolver(context);
-        if (isStrict) {
-            return strictHelper.replacePlaceholders(template, placeholderResolver);
-        } else {
-            return nonStrictHelper.replacePlaceholders(template, placeholderResolver);
-        }
+        return expressionCache.get(value,
+            key -> expressionParser.parseExpression(key, TemplatePlan.TEMPLATE_PARSER_CONTEXT));
     }
 
     /**
@@ -237,14 +656,13 @@ public class StringTemplateResolver {
     private PlaceholderResolver builderPlaceholderResolver(Object context) {
         if (context instanceof Map) {
             Map<?, ?> placeholderValueMap = (Map<?, ?>) context;
-            return key -> Optional.ofNullable(placeholderValueMap.get(key))
-                .map(this::readString)
-                .orElse(null);
+            return key -> toText(placeholderValueMap.get(key));
         }
         Map<String, PropertyReadable> properties = getReadableProperties(context);
-        return name -> Optional.ofNullable(properties.get(name))
-            .map(prop -> prop.readString(context))
-            .orElse(null);
+        return name -> {
+            PropertyReadable property = properties.get(name);
+            return property == null ? null : property.readString(context);
+        };
     }
 
     /**
@@ -279,17 +697,108 @@ public class StringTemplateResolver {
         return propertyMap;
     }
 
-    @SuppressWarnings({"unchecked"})
-    private String readString(Object obj) {
+    /**
+     * 转换为字符串，如果是Supplier则使用Supplier提供的值
+     *
+     * @param obj obj
+     * @return String
+     */
+    private static String toText(Object obj) {
         Object value = obj;
         if (obj instanceof Supplier) {
-            value = ((Supplier<Object>) obj).get();
+            value = ((Supplier<?>) obj).get();
         }
         return value == null ? null : value.toString();
     }
 
     /**
-     * 可读的属性
+     * 一次解析的状态
+     */
+    private class RenderState extends TemplatePlan.RenderState {
+
+        private final Object context;
+
+        RenderState(Object context, boolean strict) {
+            super(builderPlaceholderResolver(context), strict);
+            this.context = context;
+        }
+
+        @Override
+        Object getValue(Expression expression) {
+            return expression.getValue(evaluationContext, context);
+        }
+
+        @Override
+        String getStringValue(Expression expression) {
+            return expression.getValue(evaluationContext, context, String.class);
+        }
+
+        @Override
+        String evaluate(String text) {
+            return StringTemplateResolver.this.evaluate(text, context);
+        }
+    }
+
+    /**
+     * 开启统计时一次解析的状态，累计SpEL耗时，记录缓存命中
+     */
+    private class TimedRenderState extends RenderState {
+
+        private final long startNanos = System.nanoTime();
+
+        private long expressionNanos;
+
+        private boolean cacheHit = true;
+
+        private boolean failed = true;
+
+        TimedRenderState(Object context, boolean strict) {
+            super(context, strict);
+        }
+
+        @Override
+        Object getValue(Expression expression) {
+            long start = System.nanoTime();
+            try {
+                return super.getValue(expression);
+            } finally {
+                expressionNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        String getStringValue(Expression expression) {
+            long start = System.nanoTime();
+            try {
+                return super.getStringValue(expression);
+            } finally {
+                expressionNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        String evaluate(String text) {
+            long start = System.nanoTime();
+            try {
+                return super.evaluate(text);
+            } finally {
+                expressionNanos += System.nanoTime() - start;
+            }
+        }
+
+        void succeed() {
+            failed = false;
+        }
+
+        void record(String template) {
+            instrumentation.record(template, System.nanoTime() - startNanos, expressionNanos, failed);
+            instrumentation.recordCache(template, cacheHit);
+        }
+    }
+
+    /**
+     * 可读的属性，读方法在第一次使用时生成{@link Function}(LambdaMetafactory)，
+     * 无法生成时退化为MethodHandle，之后读取属性接近直接调用getter的性能
      */
     static class PropertyReadable {
 
@@ -302,9 +811,56 @@ public class StringTemplateResolver {
          */
         private final Method readMethod;
 
+        /**
+         * 生成的属性读取函数
+         */
+        private final Function<Object, Object> getter;
+
         PropertyReadable(PropertyDescriptor propertyDescriptor) {
             this.propertyDescriptor = propertyDescriptor;
             readMethod = propertyDescriptor.getReadMethod();
+            getter = readMethod == null ? null : createGetter(readMethod);
+        }
+
+        /**
+         * 创建属性读取函数
+         *
+         * @param readMethod 读方法
+         * @return Function
+         */
+        @SuppressWarnings({"unchecked"})
+        private static Function<Object, Object> createGetter(Method readMethod) {
+            MethodHandle handle;
+            try {
+                ReflectionUtils.makeAccessible(readMethod);
+                handle = MethodHandles.lookup().unreflect(readMethod);
+            } catch (IllegalAccessException | RuntimeException e) {
+                return instance -> ReflectionUtils.invokeMethod(readMethod, instance);
+            }
+
+            // lambda类定义在当前类的类加载器中，必须能看到bean的类
+            if (ClassUtils.isVisible(readMethod.getDeclaringClass(), StringTemplateResolver.class.getClassLoader())) {
+                try {
+                    MethodHandles.Lookup lookup = MethodHandles.lookup();
+                    CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                        MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class),
+                        handle,
+                        handle.type().wrap());
+                    return (Function<Object, Object>) site.getTarget().invokeExact();
+                } catch (Throwable e) {
+                    // 没有访问权限等原因无法生成lambda，使用MethodHandle
+                }
+            }
+            MethodHandle genericHandle = handle.asType(MethodType.methodType(Object.class, Object.class));
+            return instance -> {
+                try {
+                    return genericHandle.invokeExact(instance);
+                } catch (Throwable e) {
+                    ReflectionUtils.rethrowRuntimeException(e);
+                    return null;
+                }
+            };
         }
 
         /**
@@ -314,17 +870,17 @@ public class StringTemplateResolver {
          * @return String
          */
         String readString(Object instance) {
-            if (readMethod == null) {
+            if (getter == null) {
                 return null;
             }
+            Object value;
             try {
-                return Optional.ofNullable(readMethod.invoke(instance))
-                    .map(sharedInstance::readString)
-                    .orElse(null);
-            } catch (IllegalAccessException | InvocationTargetException e) {
+                value = getter.apply(instance);
+            } catch (RuntimeException e) {
                 throw new StringResolveException(
                     "Read bean[" + instance.getClass() + "] property[" + getName() + "] failed", e);
             }
+            return toText(value);
         }
 
         /**
@@ -345,4 +901,54 @@ public class StringTemplateResolver {
             return propertyDescriptor.getName();
         }
     }
+
+    /**
+     * 解析出的SpEL表达式记录编译结果，供{@link #getExpressionMetrics()}读取
+     */
+    private static final class CompileTrackingParser extends SpelExpressionParser {
+
+        private final SpelParserConfiguration configuration;
+
+        CompileTrackingParser(SpelParserConfiguration configuration) {
+            super(configuration);
+            this.configuration = configuration;
+        }
+
+        @Override
+        protected SpelExpression doParseExpression(String expressionString, ParserContext context) {
+            SpelExpression parsed = super.doParseExpression(expressionString, context);
+            return new CompileTrackingExpression(parsed.getExpressionString(), (SpelNodeImpl) parsed.getAST(),
+                configuration);
+        }
+    }
+
+    /**
+     * 编译由SpEL按编译模式在执行时触发，这里只在编译、退回解释执行时记录结果。
+     * MIXED模式下编译后的代码执行失败时SpEL直接退回解释执行，到下一次尝试编译之前仍然记录为已编译
+     */
+    private static final class CompileTrackingExpression extends SpelExpression {
+
+        private volatile boolean compiled;
+
+        CompileTrackingExpression(String expression, SpelNodeImpl ast, SpelParserConfiguration configuration) {
+            super(expression, ast, configuration);
+        }
+
+        @Override
+        public boolean compileExpression() {
+            boolean result = super.compileExpression();
+            compiled = result;
+            return result;
+        }
+
+        @Override
+        public void revertToInterpreted() {
+            super.revertToInterpreted();
+            compiled = false;
+        }
+
+        boolean isCompiled() {
+            return compiled;
+        }
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import lombok.Data;
+import org.springframework.expression.spel.SpelCompilerMode;
+
+/**
+ * 字符串模板解析器配置
+ *
+ * @author LuoQuan
+ * @since 2022/6/22
+ */
+@Data
+public class StringTemplateResolverProperties {
+
+    /**
+     * 模板执行计划缓存的最大数量
+     */
+    private long planCacheMaximumSize = 1024;
+
+    /**
+     * 表达式缓存的最大数量，只有SpEL包含占位符或者占位符的值包含SpEL时才会使用
+     */
+    private long expressionCacheMaximumSize = 1024;
+
+    /**
+     * SpEL编译模式：
+     * <li>OFF 只使用解释器
+     * <li>IMMEDIATE 表达式执行过后立即编译为字节码，编译后的代码执行失败会抛出异常
+     * <li>MIXED 表达式执行多次后编译为字节码，编译后的代码执行失败会退回解释器
+     * <p>
+     * 无法编译的表达式(如方法重载、类型不确定)始终使用解释器
+     */
+    private SpelCompilerMode compilerMode = SpelCompilerMode.OFF;
+
+    /**
+     * 是否按模板统计调用次数、耗时分布(分占位符、SpEL阶段)、缓存命中、失败次数，
+     * 开启后通过StringTemplateResolver#getInstrumentation获取
+     */
+    private boolean instrumentationEnabled = false;
+
+    /**
+     * 单独统计的模板最大数量，超过后合并统计
+     */
+    private int instrumentationMaximumNames = 1000;
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 属性值模板的不可变索引
+ * <p>
+ * 同时按属性名称和父节点名称索引，创建后只读，可以在多个线程之间无锁共享，
+ * 变更时创建新的索引整体替换
+ *
+ * @author LuoQuan
+ * @since 2022/6/26
+ */
+final class TemplateIndex {
+
+    /**
+     * 空索引
+     */
+    static final TemplateIndex EMPTY = new TemplateIndex(Collections.emptyMap(), Collections.emptyMap());
+
+    /**
+     * 属性名称 -> 模板
+     */
+    private final Map<String, String> templates;
+
+    /**
+     * 父节点名称 -> (属性名称 -> 模板)
+     */
+    private final Map<String, Map<String, String>> children;
+
+    private TemplateIndex(Map<String, String> templates, Map<String, Map<String, String>> children) {
+        this.templates = templates;
+        this.children = children;
+    }
+
+    /**
+     * 创建索引
+     *
+     * @param templates 属性名称 -> 模板
+     * @return TemplateIndex
+     */
+    static TemplateIndex of(Map<String, String> templates) {
+        if (templates.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, String> copy = new HashMap<>(templates);
+        Map<String, Map<String, String>> children = new HashMap<>();
+        copy.forEach((name, template) ->
+            children.computeIfAbsent(parentOf(name), key -> new HashMap<>()).put(name, template));
+        children.replaceAll((parent, properties) -> Collections.unmodifiableMap(properties));
+        return new TemplateIndex(Collections.unmodifiableMap(copy), Collections.unmodifiableMap(children));
+    }
+
+    /**
+     * 父节点名称，与ConfigurationPropertyName#getParent一致：a.b -> a，a.b[0] -> a.b，a -> ""
+     *
+     * @param name 属性名称
+     * @return 父节点名称
+     */
+    static String parentOf(String name) {
+        int index = Math.max(name.lastIndexOf('.'), name.lastIndexOf('['));
+        return index < 0 ? "" : name.substring(0, index);
+    }
+
+    /**
+     * 获取模板
+     *
+     * @param propertyName 属性名称
+     * @return 模板，不存在时返回null
+     */
+    String get(String propertyName) {
+        return templates.get(propertyName);
+    }
+
+    /**
+     * 获取父节点下的全部子节点模板
+     *
+     * @param parentPropertyName 父节点名称
+     * @return 不可变的map，属性名称 -> 模板
+     */
+    Map<String, String> getChildren(String parentPropertyName) {
+        return children.getOrDefault(parentPropertyName, Collections.emptyMap());
+    }
+
+    /**
+     * 全部模板
+     *
+     * @return 不可变的map，属性名称 -> 模板
+     */
+    Map<String, String> getTemplates() {
+        return templates;
+    }
+
+    /**
+     * 与另一个索引相比，子节点有变化的父节点名称
+     *
+     * @param other 另一个索引
+     * @return Set
+     */
+    Set<String> changedParents(TemplateIndex other) {
+        Set<String> parents = new HashSet<>(children.keySet());
+        parents.addAll(other.children.keySet());
+        parents.removeIf(parent -> Objects.equals(getChildren(parent), other.getChildren(parent)));
+        return parents;
+    }
+}
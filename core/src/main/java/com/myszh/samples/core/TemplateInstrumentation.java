@@ -0,0 +1,157 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按模板或者POJO定义名称统计调用次数、失败次数、缓存命中、耗时分布
+ * <p>
+ * 计数使用LongAdder，耗时使用无锁的直方图，多线程记录没有锁竞争，可以在生产环境一直开启。
+ * 名称数量有上限，超过后的统计合并为{@link #OTHER}，避免动态生成的模板撑爆内存
+ *
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+public class TemplateInstrumentation {
+
+    /**
+     * 超过最大数量后合并统计的名称
+     */
+    public static final String OTHER = "__other__";
+
+    private final int maximumNames;
+
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public TemplateInstrumentation() {
+        this(1000);
+    }
+
+    /**
+     * @param maximumNames 单独统计的名称最大数量
+     */
+    public TemplateInstrumentation(int maximumNames) {
+        this.maximumNames = maximumNames;
+    }
+
+    /**
+     * 记录一次调用
+     *
+     * @param name       模板或者定义名称
+     * @param totalNanos 总耗时
+     * @param failed     是否失败
+     */
+    public void record(String name, long totalNanos, boolean failed) {
+        getStats(name, false).record(totalNanos, failed);
+    }
+
+    /**
+     * 记录一次分阶段的调用，占位符阶段耗时为总耗时减去SpEL耗时
+     *
+     * @param name            模板名称
+     * @param totalNanos      总耗时
+     * @param expressionNanos SpEL耗时
+     * @param failed          是否失败
+     */
+    public void record(String name, long totalNanos, long expressionNanos, boolean failed) {
+        Stats current = getStats(name, true);
+        current.record(totalNanos, failed);
+        current.placeholderLatency.record(totalNanos - expressionNanos);
+        current.expressionLatency.record(expressionNanos);
+    }
+
+    /**
+     * 记录一次缓存访问
+     *
+     * @param name 模板或者定义名称
+     * @param hit  是否命中
+     */
+    public void recordCache(String name, boolean hit) {
+        Stats current = getStats(name, false);
+        (hit ? current.cacheHits : current.cacheMisses).increment();
+    }
+
+    /**
+     * 全部统计的快照
+     *
+     * @return List
+     */
+    public List<TemplateStats> snapshot() {
+        List<TemplateStats> snapshot = new ArrayList<>(stats.size());
+        stats.forEach((name, current) -> snapshot.add(current.snapshot(name)));
+        return snapshot;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    private Stats getStats(String name, boolean phased) {
+        Stats current = stats.get(name);
+        if (current == null) {
+            String key = stats.size() >= maximumNames ? OTHER : name;
+            current = stats.computeIfAbsent(key, k -> new Stats());
+        }
+        if (phased && current.placeholderLatency == null) {
+            current.initPhases();
+        }
+        return current;
+    }
+
+    /**
+     * 单个名称的统计
+     */
+    private static final class Stats {
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder cacheHits = new LongAdder();
+
+        private final LongAdder cacheMisses = new LongAdder();
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        /**
+         * 分阶段的直方图只有模板解析需要，POJO构建不创建
+         */
+        private volatile LatencyHistogram placeholderLatency;
+
+        private volatile LatencyHistogram expressionLatency;
+
+        void record(long totalNanos, boolean failed) {
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+            latency.record(totalNanos);
+        }
+
+        synchronized void initPhases() {
+            if (placeholderLatency == null) {
+                expressionLatency = new LatencyHistogram();
+                placeholderLatency = new LatencyHistogram();
+            }
+        }
+
+        TemplateStats snapshot(String name) {
+            LatencyHistogram placeholder = placeholderLatency;
+            LatencyHistogram expression = expressionLatency;
+            return new TemplateStats(name, calls.sum(), errors.sum(), cacheHits.sum(), cacheMisses.sum(),
+                latency.snapshot(),
+                placeholder == null ? null : placeholder.snapshot(),
+                expression == null ? null : expression.snapshot());
+        }
+    }
+}
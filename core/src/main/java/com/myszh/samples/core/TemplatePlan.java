@@ -0,0 +1,748 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.ParserContext;
+import org.springframework.expression.common.CompositeStringExpression;
+import org.springframework.expression.common.LiteralExpression;
+import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.util.PropertyPlaceholderHelper.PlaceholderResolver;
+
+/**
+ * 模板执行计划，模板只编译一次，得到不可变的片段序列：
+ * <li>字面量
+ * <li>占位符(支持默认值、嵌套 ${name${age}}、转义 \${name} 输出 ${name})
+ * <li>SpEL表达式 #{person.name}
+ * <p>
+ * 执行时先解析全部占位符的值，再一次遍历把所有片段追加到同一个StringBuilder中。
+ * 语义与 "先使用PropertyPlaceholderHelper替换占位符，再整体解析SpEL" 保持一致：
+ * 如果SpEL内部包含占位符(如 #{${a}+1})，或者占位符的值本身包含SpEL、与相邻的文本拼接出SpEL(如 #${a}，a为{b})，
+ * 则退化为先替换、后整体解析
+ *
+ * @author LuoQuan
+ * @since 2022/6/21
+ */
+final class TemplatePlan {
+
+    static final String PLACEHOLDER_PREFIX = "${";
+
+    static final String PLACEHOLDER_SUFFIX = "}";
+
+    static final String SIMPLE_PREFIX = "{";
+
+    static final String VALUE_SEPARATOR = ":";
+
+    static final String EXPRESSION_PREFIX = "#{";
+
+    static final String EXPRESSION_SUFFIX = "}";
+
+    private static final int FLAG_SINGLE_EXPRESSION = 1;
+
+    private static final int FLAG_DYNAMIC = 2;
+
+    private static final byte LITERAL_SEGMENT = 0;
+
+    private static final byte PLACEHOLDER_SEGMENT = 1;
+
+    private static final byte EXPRESSION_SEGMENT = 2;
+
+    /**
+     * SpEL模板解析上下文
+     */
+    static final ParserContext TEMPLATE_PARSER_CONTEXT =
+        new TemplateParserContext(EXPRESSION_PREFIX, EXPRESSION_SUFFIX);
+
+    /**
+     * 原始模板
+     */
+    private final String template;
+
+    /**
+     * 片段
+     */
+    private final Segment[] segments;
+
+    /**
+     * 占位符数量
+     */
+    private final int placeholderCount;
+
+    /**
+     * 模板是否只有一个表达式(如 #{person}),此时结果为表达式的值直接toString
+     */
+    private final boolean singleExpression;
+
+    /**
+     * 是否需要先替换占位符再整体解析SpEL
+     */
+    private final boolean dynamic;
+
+    private TemplatePlan(String template, List<Segment> segments, boolean singleExpression,
+        boolean dynamic) {
+        this.template = template;
+        this.segments = segments.toArray(new Segment[0]);
+        this.singleExpression = singleExpression;
+        this.dynamic = dynamic;
+        int count = 0;
+        for (Segment segment : this.segments) {
+            if (segment instanceof PlaceholderSegment) {
+                ((PlaceholderSegment) segment).index = count++;
+            }
+        }
+        this.placeholderCount = count;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param template 模板
+     * @param parser   SpEL解析器
+     * @return TemplatePlan
+     */
+    static TemplatePlan compile(String template, ExpressionParser parser) {
+        List<Segment> segments = new ArrayList<>();
+        if (!template.contains(EXPRESSION_PREFIX)) {
+            compilePlaceholders(template, segments);
+            return new TemplatePlan(template, segments, false, false);
+        }
+
+        Expression parsed;
+        try {
+            parsed = parser.parseExpression(template, TEMPLATE_PARSER_CONTEXT);
+        } catch (ParseException e) {
+            // 占位符替换后可能是合法的SpEL，交给运行时处理
+            return dynamic(template);
+        }
+        Expression[] parts = parsed instanceof CompositeStringExpression
+            ? ((CompositeStringExpression) parsed).getExpressions()
+            : new Expression[]{parsed};
+        for (Expression part : parts) {
+            String text = part.getExpressionString();
+            if (part instanceof LiteralExpression) {
+                // 占位符跨越了SpEL边界,如 ${a:#{b}}
+                if (!compilePlaceholders(text, segments)) {
+                    return dynamic(template);
+                }
+            } else if (text.contains(PLACEHOLDER_PREFIX)) {
+                // SpEL内部包含占位符，如 #{${a}+1}
+                return dynamic(template);
+            } else {
+                segments.add(new ExpressionSegment(part));
+            }
+        }
+        boolean singleExpression = !(parsed instanceof CompositeStringExpression)
+            && !(parsed instanceof LiteralExpression);
+        return new TemplatePlan(template, segments, singleExpression, false);
+    }
+
+    /**
+     * 编译只包含占位符的模板
+     *
+     * @param template 模板
+     * @return TemplatePlan
+     */
+    static TemplatePlan compilePlaceholders(String template) {
+        List<Segment> segments = new ArrayList<>();
+        compilePlaceholders(template, segments);
+        return new TemplatePlan(template, segments, false, false);
+    }
+
+    private static TemplatePlan dynamic(String template) {
+        List<Segment> segments = new ArrayList<>();
+        compilePlaceholders(template, segments);
+        return new TemplatePlan(template, segments, false, true);
+    }
+
+    /**
+     * 把文本拆分为字面量与占位符片段，转义的占位符前缀(\${)作为字面量 ${，占位符之前的 \\ 作为字面量 \
+     *
+     * @param text     文本
+     * @param segments 片段
+     * @return 所有占位符都能找到结束符时返回true
+     */
+    private static boolean compilePlaceholders(String text, List<Segment> segments) {
+        StringBuilder literal = new StringBuilder();
+        int position = 0;
+        int startIndex = text.indexOf(PLACEHOLDER_PREFIX);
+        boolean closed = true;
+        while (startIndex != -1) {
+            if (PlaceholderScanner.isEscaped(text, position, startIndex)) {
+                PlaceholderScanner.appendUnescaped(text, position, startIndex, literal);
+                literal.append(PLACEHOLDER_PREFIX);
+                position = startIndex + PLACEHOLDER_PREFIX.length();
+                startIndex = text.indexOf(PLACEHOLDER_PREFIX, position);
+                continue;
+            }
+            int endIndex = PlaceholderScanner.findPlaceholderEndIndex(text, startIndex, text.length());
+            if (endIndex == -1) {
+                closed = false;
+                break;
+            }
+            PlaceholderScanner.appendUnescaped(text, position, startIndex, literal);
+            if (literal.length() > 0) {
+                segments.add(new LiteralSegment(literal.toString()));
+                literal.setLength(0);
+            }
+            segments.add(new PlaceholderSegment(
+                text.substring(startIndex + PLACEHOLDER_PREFIX.length(), endIndex),
+                text.substring(startIndex, endIndex + PLACEHOLDER_SUFFIX.length())));
+            position = endIndex + PLACEHOLDER_SUFFIX.length();
+            startIndex = text.indexOf(PLACEHOLDER_PREFIX, position);
+        }
+        literal.append(text, position, text.length());
+        if (literal.length() > 0) {
+            segments.add(new LiteralSegment(literal.toString()));
+        }
+        return closed;
+    }
+
+    /**
+     * 写入快照，字符串以字符串表中的序号表示
+     *
+     * @param out     输出
+     * @param strings 字符串 -> 在字符串表中的序号，null为-1
+     * @throws IOException 写入失败
+     * @see TemplateSnapshot
+     */
+    void writeTo(DataOutput out, ToIntFunction<String> strings) throws IOException {
+        out.writeInt(strings.applyAsInt(template));
+        out.writeByte((singleExpression ? FLAG_SINGLE_EXPRESSION : 0) | (dynamic ? FLAG_DYNAMIC : 0));
+        out.writeInt(segments.length);
+        for (Segment segment : segments) {
+            segment.writeTo(out, strings);
+        }
+    }
+
+    /**
+     * 从快照读取，不再扫描占位符，只有SpEL片段需要重新解析为AST
+     *
+     * @param in      输入
+     * @param strings 字符串表
+     * @param parser  SpEL解析器
+     * @return TemplatePlan
+     * @see TemplateSnapshot
+     */
+    static TemplatePlan readFrom(ByteBuffer in, String[] strings, ExpressionParser parser) {
+        String template = strings[in.getInt()];
+        int flags = in.get();
+        int count = in.getInt();
+        List<Segment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte type = in.get();
+            if (type == LITERAL_SEGMENT) {
+                segments.add(new LiteralSegment(strings[in.getInt()]));
+            } else if (type == PLACEHOLDER_SEGMENT) {
+                String placeholder = strings[in.getInt()];
+                String source = strings[in.getInt()];
+                String actualKey = stringAt(strings, in.getInt());
+                String defaultValue = stringAt(strings, in.getInt());
+                TemplatePlan nestedKey = in.get() == 0 ? null : readFrom(in, strings, parser);
+                segments.add(new PlaceholderSegment(placeholder, source, nestedKey, actualKey, defaultValue));
+            } else if (type == EXPRESSION_SEGMENT) {
+                segments.add(new ExpressionSegment(parser.parseExpression(strings[in.getInt()])));
+            } else {
+                throw new IllegalStateException("Unknown template segment type: " + type);
+            }
+        }
+        return new TemplatePlan(template, segments,
+            (flags & FLAG_SINGLE_EXPRESSION) != 0, (flags & FLAG_DYNAMIC) != 0);
+    }
+
+    private static String stringAt(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    /**
+     * 获取原始模板
+     *
+     * @return String
+     */
+    String getTemplate() {
+        return template;
+    }
+
+    /**
+     * 获取计划中的所有SpEL表达式
+     *
+     * @return List
+     */
+    List<Expression> getExpressions() {
+        List<Expression> expressions = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment instanceof ExpressionSegment) {
+                expressions.add(((ExpressionSegment) segment).expression);
+            }
+        }
+        return expressions;
+    }
+
+    /**
+     * 执行计划
+     *
+     * @param state 执行状态
+     * @return String
+     */
+    String render(RenderState state) {
+        if (singleExpression) {
+            Object value = state.getValue(((ExpressionSegment) segments[0]).expression);
+            return value == null ? null : value.toString();
+        }
+        if (dynamic) {
+            return state.evaluate(resolveText(state));
+        }
+        String[] values = resolvePlaceholders(state);
+        if (containsExpression(values)) {
+            // 占位符的值包含SpEL，需要整体解析
+            return state.evaluate(renderText(values));
+        }
+        if (values == null && segments.length == 1) {
+            return ((LiteralSegment) segments[0]).text;
+        }
+
+        StringBuilder builder = new StringBuilder(template.length() + 16);
+        try {
+            appendSegments(state, values, builder);
+        } catch (IOException e) {
+            // StringBuilder不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 执行计划，只有一个SpEL表达式的模板(如 #{order.amount})返回表达式的原始值，不转换为字符串
+     *
+     * @param state 执行状态
+     * @return 单个表达式的值，其他模板返回String
+     */
+    Object renderValue(RenderState state) {
+        if (singleExpression) {
+            return state.getValue(((ExpressionSegment) segments[0]).expression);
+        }
+        return render(state);
+    }
+
+    /**
+     * 执行计划，结果直接写入out，不生成中间字符串
+     *
+     * @param state 执行状态
+     * @param out   输出
+     * @throws IOException 写入失败
+     */
+    void render(RenderState state, Appendable out) throws IOException {
+        if (singleExpression) {
+            Object value = state.getValue(((ExpressionSegment) segments[0]).expression);
+            if (value != null) {
+                out.append(value.toString());
+            }
+            return;
+        }
+        String value = null;
+        if (dynamic) {
+            value = state.evaluate(resolveText(state));
+        } else {
+            String[] values = resolvePlaceholders(state);
+            if (!containsExpression(values)) {
+                appendSegments(state, values, out);
+                return;
+            }
+            value = state.evaluate(renderText(values));
+        }
+        if (value != null) {
+            out.append(value);
+        }
+    }
+
+    /**
+     * 解析全部占位符的值
+     *
+     * @param state 执行状态
+     * @return 按占位符序号排列的值，没有占位符时返回null
+     */
+    private String[] resolvePlaceholders(RenderState state) {
+        if (placeholderCount == 0) {
+            return null;
+        }
+        String[] values = new String[placeholderCount];
+        for (Segment segment : segments) {
+            if (segment instanceof PlaceholderSegment) {
+                PlaceholderSegment placeholder = (PlaceholderSegment) segment;
+                values[placeholder.index] = placeholder.resolve(state, template);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 替换占位符后的文本是否包含新的SpEL：占位符的值包含 #{，
+     * 或者与前后的文本拼接出 #{(如 a# 后面是 {b}，或者 # 后面的值是 {b})
+     *
+     * @param values 占位符的值
+     * @return boolean
+     */
+    private boolean containsExpression(String[] values) {
+        if (values == null) {
+            return false;
+        }
+        char last = 0;
+        for (Segment segment : segments) {
+            String text;
+            if (segment instanceof LiteralSegment) {
+                text = ((LiteralSegment) segment).text;
+            } else if (segment instanceof PlaceholderSegment) {
+                text = values[((PlaceholderSegment) segment).index];
+                if (text.contains(EXPRESSION_PREFIX)) {
+                    return true;
+                }
+            } else {
+                last = EXPRESSION_SUFFIX.charAt(0);
+                continue;
+            }
+            if (text.isEmpty()) {
+                continue;
+            }
+            if (last == EXPRESSION_PREFIX.charAt(0) && text.startsWith(SIMPLE_PREFIX)) {
+                return true;
+            }
+            last = text.charAt(text.length() - 1);
+        }
+        return false;
+    }
+
+    private void appendSegments(RenderState state, String[] values, Appendable out) throws IOException {
+        for (Segment segment : segments) {
+            if (segment instanceof LiteralSegment) {
+                out.append(((LiteralSegment) segment).text);
+            } else if (segment instanceof PlaceholderSegment) {
+                out.append(values[((PlaceholderSegment) segment).index]);
+            } else {
+                String value = state.getStringValue(((ExpressionSegment) segment).expression);
+                if (value != null) {
+                    out.append(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * 只替换占位符，SpEL片段原样输出
+     *
+     * @param state 执行状态
+     * @return String
+     */
+    String resolveText(RenderState state) {
+        if (placeholderCount == 0 && segments.length == 1 && segments[0] instanceof LiteralSegment) {
+            return ((LiteralSegment) segments[0]).text;
+        }
+        StringBuilder builder = new StringBuilder(template.length() + 16);
+        for (Segment segment : segments) {
+            if (segment instanceof PlaceholderSegment) {
+                builder.append(((PlaceholderSegment) segment).resolve(state, template));
+            } else {
+                segment.appendSource(builder);
+            }
+        }
+        return builder.toString();
+    }
+
+    private String renderText(String[] values) {
+        StringBuilder builder = new StringBuilder(template.length() + 16);
+        for (Segment segment : segments) {
+            if (segment instanceof PlaceholderSegment) {
+                builder.append(values[((PlaceholderSegment) segment).index]);
+            } else {
+                segment.appendSource(builder);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 片段
+     */
+    abstract static class Segment {
+
+        /**
+         * 输出片段的源文本
+         *
+         * @param builder builder
+         */
+        abstract void appendSource(StringBuilder builder);
+
+        /**
+         * 写入快照
+         *
+         * @param out     输出
+         * @param strings 字符串 -> 在字符串表中的序号
+         * @throws IOException 写入失败
+         */
+        abstract void writeTo(DataOutput out, ToIntFunction<String> strings) throws IOException;
+    }
+
+    /**
+     * 字面量
+     */
+    static final class LiteralSegment extends Segment {
+
+        private final String text;
+
+        LiteralSegment(String text) {
+            this.text = text;
+        }
+
+        @Override
+        void appendSource(StringBuilder builder) {
+            builder.append(text);
+        }
+
+        @Override
+        void writeTo(DataOutput out, ToIntFunction<String> strings) throws IOException {
+            out.writeByte(LITERAL_SEGMENT);
+            out.writeInt(strings.applyAsInt(text));
+        }
+    }
+
+    /**
+     * 占位符
+     */
+    static final class PlaceholderSegment extends Segment {
+
+        /**
+         * 占位符内部文本，如 name:zhang san
+         */
+        private final String placeholder;
+
+        /**
+         * 占位符源文本，如 ${name:zhang san}
+         */
+        private final String source;
+
+        /**
+         * 嵌套占位符的key，如 ${name${age}}，没有嵌套时为null
+         */
+        private final TemplatePlan nestedKey;
+
+        /**
+         * 没有嵌套时，分隔符之前的key
+         */
+        private final String actualKey;
+
+        /**
+         * 没有嵌套时，分隔符之后的默认值
+         */
+        private final String defaultValue;
+
+        /**
+         * 在计划中的序号
+         */
+        private int index;
+
+        PlaceholderSegment(String placeholder, String source) {
+            this.placeholder = placeholder;
+            this.source = source;
+            if (PlaceholderScanner.indexOfPlaceholder(placeholder, 0, placeholder.length()) != -1) {
+                this.nestedKey = compilePlaceholders(placeholder);
+                this.actualKey = null;
+                this.defaultValue = null;
+            } else {
+                this.nestedKey = null;
+                int separatorIndex = placeholder.indexOf(VALUE_SEPARATOR);
+                if (separatorIndex != -1) {
+                    this.actualKey = placeholder.substring(0, separatorIndex);
+                    this.defaultValue = placeholder.substring(separatorIndex + VALUE_SEPARATOR.length());
+                } else {
+                    this.actualKey = null;
+                    this.defaultValue = null;
+                }
+            }
+        }
+
+        PlaceholderSegment(String placeholder, String source, TemplatePlan nestedKey, String actualKey,
+            String defaultValue) {
+            this.placeholder = placeholder;
+            this.source = source;
+            this.nestedKey = nestedKey;
+            this.actualKey = actualKey;
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * 解析占位符的值
+         *
+         * @param state    执行状态
+         * @param template 当前正在解析的模板
+         * @return 解析结果，非严格模式下无法解析时返回占位符源文本
+         */
+        String resolve(RenderState state, String template) {
+            state.enter(placeholder);
+            String value;
+            if (nestedKey == null) {
+                value = state.resolvePlaceholder(placeholder);
+                // 默认值是模板文本，处理转义；从上下文中解析到的值原样保留转义
+                boolean templateText = false;
+                if (value == null && actualKey != null) {
+                    value = state.resolvePlaceholder(actualKey);
+                    if (value == null) {
+                        value = defaultValue;
+                        templateText = true;
+                    }
+                }
+                value = PlaceholderScanner.complete(state, placeholder, value, template, templateText);
+            } else {
+                value = PlaceholderScanner.resolveValue(state, nestedKey.resolveText(state), template, true);
+            }
+            state.exit(placeholder);
+            return value == null ? source : value;
+        }
+
+        @Override
+        void appendSource(StringBuilder builder) {
+            builder.append(source);
+        }
+
+        @Override
+        void writeTo(DataOutput out, ToIntFunction<String> strings) throws IOException {
+            out.writeByte(PLACEHOLDER_SEGMENT);
+            out.writeInt(strings.applyAsInt(placeholder));
+            out.writeInt(strings.applyAsInt(source));
+            out.writeInt(strings.applyAsInt(actualKey));
+            out.writeInt(strings.applyAsInt(defaultValue));
+            out.writeByte(nestedKey == null ? 0 : 1);
+            if (nestedKey != null) {
+                nestedKey.writeTo(out, strings);
+            }
+        }
+    }
+
+    /**
+     * SpEL表达式
+     */
+    static final class ExpressionSegment extends Segment {
+
+        private final Expression expression;
+
+        ExpressionSegment(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        void appendSource(StringBuilder builder) {
+            builder.append(EXPRESSION_PREFIX)
+                .append(expression.getExpressionString())
+                .append(EXPRESSION_SUFFIX);
+        }
+
+        @Override
+        void writeTo(DataOutput out, ToIntFunction<String> strings) throws IOException {
+            out.writeByte(EXPRESSION_SEGMENT);
+            out.writeInt(strings.applyAsInt(expression.getExpressionString()));
+        }
+    }
+
+    /**
+     * 一次执行的状态
+     */
+    abstract static class RenderState {
+
+        private final PlaceholderResolver placeholderResolver;
+
+        private final boolean strict;
+
+        /**
+         * 正在解析的占位符栈，用于检测循环引用。嵌套深度通常很小，线性比较比HashSet更快，
+         * 栈底单独保存，没有嵌套时不分配数组
+         */
+        private String outermostPlaceholder;
+
+        private String[] nestedPlaceholders;
+
+        private int depth;
+
+        RenderState(PlaceholderResolver placeholderResolver, boolean strict) {
+            this.placeholderResolver = placeholderResolver;
+            this.strict = strict;
+        }
+
+        boolean isStrict() {
+            return strict;
+        }
+
+        String resolvePlaceholder(String key) {
+            return placeholderResolver.resolvePlaceholder(key);
+        }
+
+        void enter(String placeholder) {
+            if (depth == 0) {
+                outermostPlaceholder = placeholder;
+                depth = 1;
+                return;
+            }
+            if (outermostPlaceholder.equals(placeholder)) {
+                throw circularReference(placeholder);
+            }
+            int nested = depth - 1;
+            for (int i = 0; i < nested; i++) {
+                if (nestedPlaceholders[i].equals(placeholder)) {
+                    throw circularReference(placeholder);
+                }
+            }
+            if (nestedPlaceholders == null) {
+                nestedPlaceholders = new String[4];
+            } else if (nested == nestedPlaceholders.length) {
+                nestedPlaceholders = Arrays.copyOf(nestedPlaceholders, nested << 1);
+            }
+            nestedPlaceholders[nested] = placeholder;
+            depth++;
+        }
+
+        void exit(String placeholder) {
+            depth--;
+            if (depth == 0) {
+                outermostPlaceholder = null;
+            } else {
+                nestedPlaceholders[depth - 1] = null;
+            }
+        }
+
+        private static IllegalArgumentException circularReference(String placeholder) {
+            return new IllegalArgumentException(
+                "Circular placeholder reference '" + placeholder + "' in property definitions");
+        }
+
+        /**
+         * 执行表达式
+         *
+         * @param expression 表达式
+         * @return Object
+         */
+        abstract Object getValue(Expression expression);
+
+        /**
+         * 执行表达式，结果转换为字符串
+         *
+         * @param expression 表达式
+         * @return String
+         */
+        abstract String getStringValue(Expression expression);
+
+        /**
+         * 把替换完占位符的文本当做SpEL模板整体解析
+         *
+         * @param text 文本
+         * @return String
+         */
+        abstract String evaluate(String text);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * 属性值模板的二进制快照
+ * <p>
+ * 在构建或者部署时把全部属性值模板连同编译好的模板执行计划写入快照文件，
+ * 启动时通过内存映射加载，执行计划直接放入{@link StringTemplateResolver}的缓存，
+ * 不需要再解析properties文本、扫描占位符。SpEL的AST不能序列化，SpEL片段在加载时重新解析，
+ * 同样在启动时完成，第一次请求不再有编译开销。
+ * <p>
+ * 执行计划缓存有最大数量(StringTemplateResolverProperties#planCacheMaximumSize)，应该不小于模板数量。
+ * <p>
+ * 文件格式(大端)：
+ * <pre>
+ * int 魔数 | int 版本
+ * int 字符串数量 | (int UTF-8字节数, bytes)...
+ * int 属性数量 | (int 名称序号, int 模板序号)...
+ * int 执行计划数量 | 执行计划...
+ * </pre>
+ * 快照本身也是属性值模板提供者，只读，不支持变更
+ *
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+public final class TemplateSnapshot implements POJOPropertyValueTemplateProvider {
+
+    private static final int MAGIC = 0x50545350;
+
+    private static final int VERSION = 1;
+
+    private final TemplateIndex index;
+
+    private TemplateSnapshot(TemplateIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * 写入快照，先写入临时文件再替换，加载方不会读到写了一半的文件
+     *
+     * @param templates 属性名称 -> 模板
+     * @param resolver  编译模板执行计划使用的解析器，应该与加载时的配置一致
+     * @param file      快照文件
+     */
+    public static void write(Map<String, String> templates, StringTemplateResolver resolver, Path file) {
+        Objects.requireNonNull(templates);
+        Objects.requireNonNull(resolver);
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(body);
+            ToIntFunction<String> table = value -> {
+                if (value == null) {
+                    return -1;
+                }
+                return stringIndexes.computeIfAbsent(value, key -> {
+                    strings.add(key);
+                    return strings.size() - 1;
+                });
+            };
+
+            out.writeInt(templates.size());
+            Set<String> planTemplates = new LinkedHashSet<>();
+            for (Map.Entry<String, String> entry : templates.entrySet()) {
+                out.writeInt(table.applyAsInt(entry.getKey()));
+                out.writeInt(table.applyAsInt(entry.getValue()));
+                planTemplates.add(entry.getValue());
+            }
+            out.writeInt(planTemplates.size());
+            for (String template : planTemplates) {
+                resolver.getPlan(template).writeTo(out, table);
+            }
+            out.flush();
+
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try (DataOutputStream fileOut = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                fileOut.writeInt(MAGIC);
+                fileOut.writeInt(VERSION);
+                fileOut.writeInt(strings.size());
+                for (String value : strings) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    fileOut.writeInt(bytes.length);
+                    fileOut.write(bytes);
+                }
+                body.writeTo(fileOut);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("write template snapshot[" + file + "] failed", e);
+        }
+    }
+
+    /**
+     * 加载快照，模板执行计划放入resolver的缓存
+     *
+     * @param file     快照文件
+     * @param resolver 模板解析器
+     * @return TemplateSnapshot
+     */
+    public static TemplateSnapshot load(Path file, StringTemplateResolver resolver) {
+        Objects.requireNonNull(resolver);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC) {
+                throw new IllegalStateException("[" + file + "] is not a template snapshot");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("Unsupported template snapshot version: " + version);
+            }
+
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                int length = in.getInt();
+                ByteBuffer bytes = in.slice();
+                bytes.limit(length);
+                strings[i] = StandardCharsets.UTF_8.decode(bytes).toString();
+                in.position(in.position() + length);
+            }
+
+            int templateCount = in.getInt();
+            Map<String, String> templates = new HashMap<>(templateCount * 4 / 3 + 1);
+            for (int i = 0; i < templateCount; i++) {
+                templates.put(strings[in.getInt()], strings[in.getInt()]);
+            }
+            int planCount = in.getInt();
+            for (int i = 0; i < planCount; i++) {
+                resolver.loadPlan(in, strings);
+            }
+            return new TemplateSnapshot(TemplateIndex.of(templates));
+        } catch (IOException e) {
+            throw new UncheckedIOException("load template snapshot[" + file + "] failed", e);
+        }
+    }
+
+    /**
+     * 构建时生成快照：第一个参数为快照文件，之后为properties文件(UTF-8)，后面的文件覆盖前面的文件
+     *
+     * @param args 快照文件 properties文件...
+     * @throws IOException 读取properties文件失败
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TemplateSnapshot <snapshot file> <properties file>...");
+            System.exit(1);
+        }
+        Map<String, String> templates = new LinkedHashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(Paths.get(args[i]))) {
+                properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+            properties.stringPropertyNames().forEach(name -> templates.put(name, properties.getProperty(name)));
+        }
+        write(templates, StringTemplateResolver.getInstance(), Paths.get(args[0]));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getValueTemplate(String parentPropertyName, String propertyName) {
+        return index.get(propertyName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getValueTemplate(String propertyName) {
+        return index.getChildren(propertyName);
+    }
+
+    /**
+     * 全部模板
+     *
+     * @return 不可变的map，属性名称 -> 模板
+     */
+    public Map<String, String> getTemplates() {
+        return index.getTemplates();
+    }
+}
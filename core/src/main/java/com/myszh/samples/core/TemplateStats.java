@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import lombok.Value;
+
+/**
+ * 单个模板或者POJO定义的统计快照
+ *
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+@Value
+public class TemplateStats {
+
+    /**
+     * 模板或者定义名称，超过最大数量后的统计合并为{@link TemplateInstrumentation#OTHER}
+     */
+    String name;
+
+    /**
+     * 调用次数
+     */
+    long calls;
+
+    /**
+     * 失败次数
+     */
+    long errors;
+
+    /**
+     * 缓存(模板执行计划或者绑定计划)命中次数
+     */
+    long cacheHits;
+
+    /**
+     * 缓存未命中次数
+     */
+    long cacheMisses;
+
+    /**
+     * 总耗时
+     */
+    LatencySnapshot latency;
+
+    /**
+     * 占位符阶段(包括字面量拼接)的耗时，没有分阶段统计时为null
+     */
+    LatencySnapshot placeholderLatency;
+
+    /**
+     * SpEL阶段的耗时，没有分阶段统计时为null
+     */
+    LatencySnapshot expressionLatency;
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core;
+
+import com.myszh.samples.core.exception.StringResolveException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 以UTF-8编码把字符直接写入ByteBuffer的Appendable，不生成中间字符串
+ * <p>
+ * 代理对(surrogate pair)可能被拆分在两次append中，高代理项会暂存到下一次append
+ *
+ * @author LuoQuan
+ * @since 2022/6/23
+ */
+final class Utf8ByteBufferAppendable implements Appendable {
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private final ByteBuffer buffer;
+
+    /**
+     * 暂存的高代理项，0表示没有
+     */
+    private char highSurrogate;
+
+    Utf8ByteBufferAppendable(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) {
+        CharSequence text = csq == null ? "null" : csq;
+        return append(text, 0, text.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) {
+        CharSequence text = csq == null ? "null" : csq;
+        if (start >= end) {
+            return this;
+        }
+        int from = start;
+        int to = end;
+        if (highSurrogate != 0) {
+            encode(CharBuffer.wrap(new char[]{highSurrogate, text.charAt(from)}));
+            highSurrogate = 0;
+            from++;
+        }
+        if (from < to && Character.isHighSurrogate(text.charAt(to - 1))) {
+            highSurrogate = text.charAt(to - 1);
+            to--;
+        }
+        if (from < to) {
+            encode(CharBuffer.wrap(text, from, to));
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) {
+        if (highSurrogate != 0) {
+            encode(CharBuffer.wrap(new char[]{highSurrogate, c}));
+            highSurrogate = 0;
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else {
+            encode(CharBuffer.wrap(new char[]{c}));
+        }
+        return this;
+    }
+
+    /**
+     * 结束写入，输出暂存的字符
+     */
+    void finish() {
+        CharBuffer rest = highSurrogate == 0
+            ? CharBuffer.allocate(0)
+            : CharBuffer.wrap(new char[]{highSurrogate});
+        highSurrogate = 0;
+        check(encoder.encode(rest, buffer, true));
+        check(encoder.flush(buffer));
+    }
+
+    private void encode(CharBuffer in) {
+        check(encoder.encode(in, buffer, false));
+    }
+
+    private void check(CoderResult result) {
+        if (result.isOverflow()) {
+            throw new BufferOverflowException();
+        }
+        if (result.isError()) {
+            try {
+                result.throwException();
+            } catch (CharacterCodingException e) {
+                throw new StringResolveException("Encode template failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.myszh.samples.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+class CachingValueTemplateProviderTest {
+
+    private final Map<String, String> store = new ConcurrentHashMap<>();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final List<Consumer<String>> storeListeners = new ArrayList<>();
+
+    private final POJOPropertyValueTemplateProvider slowStore = new POJOPropertyValueTemplateProvider() {
+        @Override
+        public String getValueTemplate(String parentPropertyName, String propertyName) {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return store.get(propertyName);
+        }
+
+        @Override
+        public void addChangeListener(Consumer<String> listener) {
+            storeListeners.add(listener);
+        }
+    };
+
+    /**
+     * 同时未命中只加载一次，不存在的模板也缓存
+     */
+    @Test
+    void should_coalesce_misses_and_cache_missing() {
+        store.put("msg.user.name", "zhang san");
+        CachingValueTemplateProvider provider = new CachingValueTemplateProvider(slowStore);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return provider.getValueTemplate("msg.user", "msg.user.name");
+            }));
+        }
+        start.countDown();
+        futures.forEach(future -> assertEquals("zhang san", future.join()));
+        assertEquals(1, loads.get());
+
+        assertNull(provider.getValueTemplate("msg.user", "msg.user.age"));
+        assertNull(provider.getValueTemplate("msg.user", "msg.user.age"));
+        assertEquals(2, loads.get());
+        assertEquals(2, provider.getTemplateCacheMetrics().getMissCount());
+        assertEquals(8, provider.getTemplateCacheMetrics().getHitCount());
+    }
+
+    /**
+     * 存储变更后清理对应父节点的缓存，并转发通知
+     */
+    @Test
+    void should_invalidate_changed_parent() {
+        store.put("msg.user.name", "zhang san");
+        CachingValueTemplateProvider provider = new CachingValueTemplateProvider(slowStore);
+        List<String> changed = new ArrayList<>();
+        provider.addChangeListener(changed::add);
+        assertEquals("zhang san", provider.getValueTemplate("msg.user", "msg.user.name"));
+
+        store.put("msg.user.name", "li si");
+        assertEquals("zhang san", provider.getValueTemplate("msg.user", "msg.user.name"));
+        storeListeners.forEach(listener -> listener.accept("msg.user"));
+        assertEquals("li si", provider.getValueTemplate("msg.user", "msg.user.name"));
+        assertEquals("msg.user", changed.get(0));
+    }
+}
@@ -1,11 +1,27 @@
 package com.myszh.samples.core;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.myszh.samples.core.exception.BuildException;
 import com.myszh.samples.core.pojo.User;
 import java.io.File;
 import java.io.FileInputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.ResourceUtils;
@@ -48,5 +64,185 @@ class DefaultPOJOBuilderTest {
         System.out.println(user);
         assertNotNull(user);
     }
-}
 
+    /**
+     * 绑定计划构建的结果必须与Binder一致
+     */
+    @Test
+    void should_build_same_user_with_plan() {
+        MultiContext context = MultiContext.of()
+            .add("suffix", "_sz")
+            .add("end", () -> ".001");
+        DefaultPOJOBuilder planBuilder = new DefaultPOJOBuilder(properties);
+        planBuilder.setBuildMode(DefaultPOJOBuilder.BuildMode.PLAN);
+
+        User expected = pojoBuilder.build(User.class, context, "msg.order.delivery");
+        for (int i = 0; i < 3; i++) {
+            User user = planBuilder.build(User.class, context, "msg.order.delivery");
+            assertEquals(expected, user);
+            assertEquals("ZhangSan_sz", user.getName());
+            assertEquals("0.31", user.getPet().getHeart().getWeight().toString());
+            assertEquals("0.05", user.getPet().getBrain().getWeight().toString());
+            assertNull(user.getFriend());
+        }
+    }
+
+    /**
+     * 批量构建，单个失败不影响其他
+     */
+    @Test
+    void should_build_all_users() {
+        List<MultiContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            MultiContext context = MultiContext.of().add("end", "." + i);
+            // 第50个的年龄无法转换为数字，构建失败
+            contexts.add(i == 50 ? context.add("end", "x") : context.add("suffix", "_" + i));
+        }
+
+        List<BatchResult<User>> results = pojoBuilder.buildAll(User.class, contexts, "msg.order.delivery",
+            config -> true, ForkJoinPool.commonPool());
+
+        assertEquals(100, results.size());
+        for (BatchResult<User> result : results) {
+            if (result.getIndex() == 50) {
+                assertTrue(result.getError() instanceof BuildException);
+                continue;
+            }
+            assertTrue(result.isSuccess());
+            assertEquals("ZhangSan_" + result.getIndex(), result.getValue().getName());
+            assertEquals("10." + result.getIndex(), result.getValue().getAge().toPlainString());
+        }
+
+        // 流式构建与批量构建一致：单个失败不中断流，下标是上下文在流中的位置
+        for (boolean parallel : new boolean[] {false, true}) {
+            Stream<MultiContext> stream = parallel ? contexts.parallelStream() : contexts.stream();
+            List<BatchResult<User>> streamed = pojoBuilder.buildStream(User.class, stream, "msg.order.delivery")
+                .collect(Collectors.toList());
+            assertEquals(100, streamed.size());
+            for (int i = 0; i < streamed.size(); i++) {
+                BatchResult<User> result = streamed.get(i);
+                assertEquals(i, result.getIndex());
+                if (i == 50) {
+                    assertTrue(result.getError() instanceof BuildException);
+                    continue;
+                }
+                assertEquals("ZhangSan_" + i, result.getValue().getName());
+            }
+        }
+    }
+
+    /**
+     * __config__只解析一次，模板变更后重新解析，可以按上下文渲染
+     */
+    @Test
+    void should_cache_and_render_config() {
+        Properties templates = new Properties();
+        templates.putAll(properties);
+        templates.put("__config__", "{\"enabled\":true,\"channel\":\"${channel}\",\"tags\":[\"a\"]}");
+        PropertiesValueTemplateProvider provider = new PropertiesValueTemplateProvider(templates);
+        AtomicInteger configLookups = new AtomicInteger();
+        DefaultPOJOBuilder builder = new DefaultPOJOBuilder(new POJOPropertyValueTemplateProvider() {
+            @Override
+            public String getValueTemplate(String parentPropertyName, String propertyName) {
+                if ("__config__".equals(propertyName)) {
+                    configLookups.incrementAndGet();
+                }
+                return provider.getValueTemplate(parentPropertyName, propertyName);
+            }
+
+            @Override
+            public void addChangeListener(Consumer<String> listener) {
+                provider.addChangeListener(listener);
+            }
+        }, StringTemplateResolver.getInstance());
+        MultiContext context = MultiContext.of()
+            .add("suffix", "_sz")
+            .add("end", ".001")
+            .add("channel", "sms");
+
+        List<Object> channels = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(builder.build(User.class, context, "msg.order.delivery", config -> {
+                channels.add(config.get("channel"));
+                return Boolean.TRUE.equals(config.get("enabled"));
+            }));
+        }
+        assertEquals(1, configLookups.get());
+        assertEquals("${channel}", channels.get(0));
+        BuildException exception = assertThrows(BuildException.class, () ->
+            builder.build(User.class, context, "msg.order.delivery", config -> config.put("x", 1) == null));
+        assertTrue(exception.getCause() instanceof UnsupportedOperationException);
+
+        builder.setRenderConfig(true);
+        assertNotNull(builder.build(User.class, context, "msg.order.delivery",
+            config -> "sms".equals(config.get("channel"))));
+
+        // 提供者重新加载，顶层的__config__变更
+        templates.put("__config__", "{\"enabled\":false}");
+        provider.reload(templates);
+        assertNull(builder.build(User.class, context, "msg.order.delivery",
+            config -> Boolean.TRUE.equals(config.get("enabled"))));
+        assertEquals(2, configLookups.get());
+    }
+
+    /**
+     * 生成绑定计划期间模板变更，计划基于旧模板，不能在清理之后被缓存
+     */
+    @Test
+    void should_not_cache_plan_compiled_during_template_change() {
+        Map<String, String> templates = new HashMap<>();
+        templates.put("msg.change.name", "zhang san");
+        List<Consumer<String>> listeners = new ArrayList<>();
+        AtomicInteger nameLookups = new AtomicInteger();
+        DefaultPOJOBuilder builder = new DefaultPOJOBuilder(new POJOPropertyValueTemplateProvider() {
+            @Override
+            public String getValueTemplate(String parentPropertyName, String propertyName) {
+                String template = templates.get(propertyName);
+                // 第一次生成计划读取到旧模板之后，模板变更并通知
+                if ("msg.change.name".equals(propertyName) && nameLookups.incrementAndGet() == 1) {
+                    templates.put("msg.change.name", "li si");
+                    listeners.forEach(listener -> listener.accept("msg.change"));
+                }
+                return template;
+            }
+
+            @Override
+            public void addChangeListener(Consumer<String> listener) {
+                listeners.add(listener);
+            }
+        }, StringTemplateResolver.getInstance());
+        builder.setBuildMode(DefaultPOJOBuilder.BuildMode.PLAN);
+
+        assertEquals("zhang san", builder.build(User.class, new HashMap<>(), "msg.change").getName());
+        assertEquals("li si", builder.build(User.class, new HashMap<>(), "msg.change").getName());
+    }
+
+    /**
+     * 只有一个SpEL表达式的属性值直接使用表达式的原始值，两种构建方式结果一致
+     */
+    @Test
+    void should_bind_typed_expression_value() {
+        Properties typed = new Properties();
+        typed.setProperty("msg.typed.name", "#{name}");
+        typed.setProperty("msg.typed.age", "#{amount}");
+        typed.setProperty("msg.typed.girl", "#{girl}");
+        typed.setProperty("msg.typed.pet.weight", "#{weight}");
+        typed.setProperty("msg.typed.pet.name", "pet of #{name}");
+        Map<String, Object> context = new HashMap<>();
+        context.put("name", "zhang san");
+        context.put("amount", new BigDecimal("18.50"));
+        context.put("girl", Boolean.TRUE);
+        context.put("weight", 10.3d);
+
+        User expected = new DefaultPOJOBuilder(typed).build(User.class, context, "msg.typed");
+        DefaultPOJOBuilder planBuilder = new DefaultPOJOBuilder(typed);
+        planBuilder.setBuildMode(DefaultPOJOBuilder.BuildMode.PLAN);
+        User user = planBuilder.build(User.class, context, "msg.typed");
+
+        assertEquals(expected, user);
+        assertSame(context.get("amount"), user.getAge());
+        assertTrue(user.getGirl());
+        assertEquals(0, new BigDecimal("10.3").compareTo(user.getPet().getWeight()));
+        assertEquals("pet of zhang san", user.getPet().getName());
+    }
+}
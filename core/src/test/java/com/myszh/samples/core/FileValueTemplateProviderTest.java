@@ -0,0 +1,64 @@
+package com.myszh.samples.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.myszh.samples.core.pojo.User;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author LuoQuan
+ * @since 2022/6/26
+ */
+class FileValueTemplateProviderTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 后面的文件覆盖前面的文件，文件变更后自动重新加载并清理绑定计划
+     */
+    @Test
+    void should_reload_changed_file() throws Exception {
+        Path base = directory.resolve("base.properties");
+        Path override = directory.resolve("override.properties");
+        Files.write(base, Arrays.asList("msg.user.name=张三${suffix}", "msg.user.age=18"), StandardCharsets.UTF_8);
+        Files.write(override, Arrays.asList("msg.user.age=20"), StandardCharsets.UTF_8);
+
+        try (FileValueTemplateProvider provider = new FileValueTemplateProvider(Arrays.asList(base, override))) {
+            assertEquals("20", provider.getValueTemplate("msg.user", "msg.user.age"));
+            assertEquals(2, provider.getValueTemplate("msg.user").size());
+            assertNull(provider.getValueTemplate("msg.user", "msg.user.girl"));
+
+            DefaultPOJOBuilder builder = new DefaultPOJOBuilder(provider, StringTemplateResolver.getInstance());
+            builder.setBuildMode(DefaultPOJOBuilder.BuildMode.PLAN);
+            MultiContext context = MultiContext.of().add("suffix", "_sz");
+            assertEquals("张三_sz", builder.build(User.class, context, "msg.user").getName());
+
+            List<String> changedParents = new CopyOnWriteArrayList<>();
+            provider.addChangeListener(changedParents::add);
+            provider.watch();
+            Files.write(override, Arrays.asList("msg.user.age=20", "msg.user.name=李四"), StandardCharsets.UTF_8);
+
+            // 等待加载到期望的内容并且已经通知(先替换索引再通知)，而不是第一次变更通知
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!("李四".equals(provider.getValueTemplate("msg.user", "msg.user.name"))
+                && changedParents.contains("msg.user")) && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals("李四", provider.getValueTemplate("msg.user", "msg.user.name"));
+            assertEquals("20", provider.getValueTemplate("msg.user", "msg.user.age"));
+            assertTrue(changedParents.contains("msg.user"));
+            assertEquals("李四", builder.build(User.class, context, "msg.user").getName());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.myszh.samples.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+class LatencyHistogramTest {
+
+    /**
+     * 多线程记录，快照中的次数、分位数与顺序记录一致
+     */
+    @Test
+    void should_record_concurrently() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 1; i <= 10000; i++) {
+                    histogram.record(i * 1000L);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(40000, snapshot.getCount());
+        assertEquals(10_000_000L, snapshot.getMax());
+        // 相对误差不超过1/16
+        assertTrue(Math.abs(snapshot.getP50() - 5_000_000L) <= 5_000_000L / 16, () -> "p50: " + snapshot.getP50());
+        assertTrue(snapshot.getP99() <= snapshot.getMax());
+    }
+}
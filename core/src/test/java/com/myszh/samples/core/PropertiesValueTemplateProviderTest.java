@@ -0,0 +1,53 @@
+package com.myszh.samples.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author LuoQuan
+ * @since 2022/6/26
+ */
+class PropertiesValueTemplateProviderTest {
+
+    /**
+     * 按父节点索引子节点，重新加载后整体替换并通知变更的父节点
+     */
+    @Test
+    void should_index_by_parent_and_reload() {
+        Properties properties = new Properties();
+        properties.setProperty("msg.order.name", "a");
+        properties.setProperty("msg.order.pet.name", "b");
+        properties.setProperty("msg.order.tags[0]", "c");
+        PropertiesValueTemplateProvider provider = new PropertiesValueTemplateProvider(properties);
+        List<String> changed = new ArrayList<>();
+        provider.addChangeListener(changed::add);
+
+        Map<String, String> children = provider.getValueTemplate("msg.order");
+        assertEquals(1, children.size());
+        assertEquals("a", children.get("msg.order.name"));
+        assertEquals("c", provider.getValueTemplate("msg.order.tags").get("msg.order.tags[0]"));
+        assertEquals("b", provider.getValueTemplate("msg.order.pet", "msg.order.pet.name"));
+
+        // 复制之后的修改不可见
+        properties.setProperty("msg.order.pet.name", "d");
+        assertEquals("b", provider.getValueTemplate("msg.order.pet", "msg.order.pet.name"));
+
+        provider.reload(properties);
+        assertEquals("d", provider.getValueTemplate("msg.order.pet", "msg.order.pet.name"));
+        assertEquals(1, changed.size());
+        assertTrue(changed.contains("msg.order.pet"));
+
+        properties.remove("msg.order.name");
+        provider.reload(properties);
+        assertNull(provider.getValueTemplate("msg.order", "msg.order.name"));
+        assertTrue(provider.getValueTemplate("msg.order").isEmpty());
+        assertEquals("msg.order", changed.get(1));
+    }
+}
@@ -1,15 +1,28 @@
 package com.myszh.samples.core;
 
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-import lombok.experimental.Accessors;
+import com.myszh.samples.core.exception.StringResolveException;
+import com.myszh.samples.core.pojo.Person;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.springframework.expression.spel.SpelCompilerMode;
 
+import java.beans.PropertyDescriptor;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -105,6 +118,21 @@ class StringTemplateResolverTest {
         assertEquals("10+23=33", value);
     }
 
+    /**
+     * 只有一个SpEL表达式的模板返回原始值，其他模板返回字符串
+     */
+    @Test
+    void should_parse_typed_value() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("amount", 18.5d);
+        context.put("name", "zhang san");
+
+        assertEquals(18.5d, templateResolver.parseValue("#{amount}", context));
+        assertEquals(33, templateResolver.parseValue("#{10+23}", null));
+        assertEquals("18.5 yuan", templateResolver.parseValue("#{amount} yuan", context));
+        assertEquals("zhang san", templateResolver.parseValue("${name}", context));
+    }
+
     /**
      * SePL与Map
      */
@@ -160,15 +188,413 @@ class StringTemplateResolverTest {
     }
 
 
-    @Data
-    @AllArgsConstructor
-    @Builder
-    @NoArgsConstructor
-    @Accessors(chain = true)
-    private static class Person {
-        private String name;
-        private int age;
-        private String addr;
-        private String addr2;
+    /**
+     * 同一个模板(执行计划)对不同的上下文解析
+     */
+    @Test
+    void should_parse_same_template_with_different_context() {
+        String template = "my name is ${name}, age #{age + 1}";
+        for (int age = 0; age < 3; age++) {
+            Map<String, Object> context = new HashMap<>();
+            context.put("name", "zhang san" + age);
+            context.put("age", age);
+            assertEquals("my name is zhang san" + age + ", age " + (age + 1),
+                templateResolver.parse(template, context));
+        }
+    }
+
+    /**
+     * 占位符嵌套在表达式中、占位符的值为表达式，都需要先替换占位符再解析表达式
+     */
+    @Test
+    void should_parse_placeholder_and_expression_mixed() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("a", "10");
+        context.put("b", "#{a + 1}");
+        context.put("num", 5);
+
+        assertEquals("11", templateResolver.parse("#{${a}+1}", context));
+        assertEquals("v=101", templateResolver.parse("v=${b}", context));
+        assertEquals("5-6", templateResolver.parse("#{num}-#{num + 1}", context));
+    }
+
+    /**
+     * 占位符的值与相邻的文本拼接出SpEL，与先替换占位符再整体解析一致
+     */
+    @Test
+    void should_parse_expression_joined_by_placeholder() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("open", "{num + 1}");
+        context.put("hash", "total #");
+        context.put("sharp", "#");
+        context.put("num", 5);
+
+        assertEquals("6", templateResolver.parse("#${open}", context));
+        assertEquals("total 6", templateResolver.parse("${hash}{num + 1}", context));
+        assertEquals("6", templateResolver.parse("${sharp}${open}", context));
+        assertEquals("5 6", templateResolver.parse("#{num} #${open}", context));
+        assertEquals("5{num + 1}", templateResolver.parse("#{num}${open}", context));
+    }
+
+    /**
+     * 循环引用的占位符
+     */
+    @Test
+    void should_fail_circular_placeholder() {
+        Map<String, String> context = new HashMap<>();
+        context.put("a", "${b}");
+        context.put("b", "${a}");
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> templateResolver.parse("${a}", context));
+    }
+
+    /**
+     * 模板文本(包括默认值)中转义的占位符原样输出，上下文中的值不处理转义
+     */
+    @Test
+    void should_parse_escaped_placeholder() {
+        Map<String, String> context = new HashMap<>();
+        context.put("name", "zhang san");
+        context.put("literal", "\\${name}");
+        context.put("nested", "${name}, \\${name}, ${name${suffix:}}");
+
+        assertEquals("\\ ${name} = zhang san", templateResolver.parse("\\ \\${name} = ${name}", context));
+        // 转义只作用于模板文本(包括默认值)，上下文中的值原样保留
+        assertEquals("\\${name}", templateResolver.parse("${literal}", context));
+        assertEquals("${name}", templateResolver.parse("${missing:\\${name}}", context));
+        assertEquals("zhang san, \\${name}, zhang san", templateResolver.parse("${nested}", context));
+        assertEquals("${name}=zhang san", templateResolver.parse("#{'\\${name}'}=${name}", context));
+    }
+
+    /**
+     * 占位符之前的转义字符可以转义自身：\\${ 输出一个\并解析占位符，\\\${ 输出\${，其他位置的转义字符原样输出
+     */
+    @Test
+    void should_parse_escaped_backslash_before_placeholder() {
+        Map<String, String> context = new HashMap<>();
+        context.put("dir", "tmp");
+
+        assertEquals("C:\\tmp", templateResolver.parse("C:\\\\${dir}", context));
+        assertEquals("C:\\${dir}", templateResolver.parse("C:\\\\\\${dir}", context));
+        assertEquals("C:\\\\tmp", templateResolver.parse("C:\\\\\\\\${dir}", context));
+        assertEquals("C:${dir}", templateResolver.parse("C:\\${dir}", context));
+        assertEquals("a\\\\b tmp", templateResolver.parse("a\\\\b ${dir}", context));
+        // 嵌套的key和默认值中同样处理
+        assertEquals("\\tmp", templateResolver.parse("${missing:\\\\${dir}}", context));
+        assertEquals("tmp", templateResolver.parse("${${missing:dir}}", context));
+    }
+
+    /**
+     * 缓存有界，并且可以获取缓存指标
+     */
+    @Test
+    void should_record_cache_metrics() {
+        StringTemplateResolverProperties properties = new StringTemplateResolverProperties();
+        properties.setPlanCacheMaximumSize(8);
+        StringTemplateResolver resolver = StringTemplateResolver.create(properties);
+
+        Map<String, Object> context = new HashMap<>();
+        context.put("name", "zhang san");
+        resolver.parse("my name is ${name}", context);
+        resolver.parse("my name is ${name}", context);
+        for (int i = 0; i < 100; i++) {
+            resolver.parse("#{" + i + "} ${name}", context);
+        }
+
+        CacheMetrics metrics = resolver.getPlanCacheMetrics();
+        assertEquals(1, metrics.getHitCount());
+        assertEquals(101, metrics.getMissCount());
+        Assertions.assertTrue(metrics.getTotalLoadTime() > 0);
+
+        // 超出容量的条目被淘汰
+        resolver.cleanUp();
+        CacheMetrics cleaned = resolver.getPlanCacheMetrics();
+        Assertions.assertTrue(cleaned.getSize() <= 8, () -> "size: " + cleaned.getSize());
+        Assertions.assertTrue(cleaned.getEvictionCount() >= 101 - 8);
+    }
+
+    /**
+     * 表达式执行上下文多线程共享，每个线程的root对象互不影响
+     */
+    @Test
+    void should_parse_expression_concurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                Person person = new Person("name" + i, i, null, null);
+                futures.add(executor.submit(() -> ("name" + person.getAge() + "," + (person.getAge() * 2))
+                    .equals(templateResolver.parse("#{name},#{age * 2}", person))));
+            }
+            for (Future<Boolean> future : futures) {
+                Assertions.assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * SpEL编译模式，能编译的表达式编译为字节码，不能编译的使用解释器
+     */
+    @Test
+    void should_parse_expression_compiled() {
+        StringTemplateResolverProperties properties = new StringTemplateResolverProperties();
+        properties.setCompilerMode(SpelCompilerMode.IMMEDIATE);
+        StringTemplateResolver resolver = StringTemplateResolver.create(properties);
+
+        Map<String, Object> user = new HashMap<>();
+        user.put("name", "zhang san");
+        user.put("city", (Supplier<String>) () -> "sz");
+        user.put("nickname", null);
+        Person person = new Person("li si", 18, "sz", null);
+        Counter counter = new Counter(3);
+        for (int i = 0; i < 5; i++) {
+            MultiContext context = MultiContext.of()
+                .add("user", () -> user)
+                .add("person", person)
+                .add("counter", counter);
+            assertEquals("zhang san", resolver.parse("#{user.name}", context));
+            assertEquals("li si 36", resolver.parse("#{person.name} #{person.age * 2}", context));
+            assertEquals("6", resolver.parse("#{counter.count * 2}", context));
+            // 编译后与解释执行一致：Supplier返回提供的值，存在的null值返回null
+            assertEquals("sz", resolver.parse("#{user.city}", context));
+            assertEquals("true", resolver.parse("#{user.nickname == null}", context));
+        }
+        // 编译之后key不存在时抛出异常
+        user.remove("city");
+        Throwable error = Assertions.assertThrows(RuntimeException.class,
+            () -> resolver.parse("#{user.city}", MultiContext.of().add("user", user), true));
+        while (error != null && !(error instanceof StringResolveException)) {
+            error = error.getCause();
+        }
+        Assertions.assertNotNull(error);
+        user.put("city", (Supplier<String>) () -> "sz");
+
+        Map<String, Boolean> compiled = new HashMap<>();
+        resolver.getExpressionMetrics()
+            .forEach(metrics -> compiled.put(metrics.getExpression(), metrics.isCompiled()));
+        assertEquals(Boolean.TRUE, compiled.get("user.name"));
+        assertEquals(Boolean.TRUE, compiled.get("user.city"));
+        assertEquals(Boolean.TRUE, compiled.get("user.nickname == null"));
+        assertEquals(Boolean.TRUE, compiled.get("person.age * 2"));
+        // Counter不是public的，无法编译，使用解释器
+        assertEquals(Boolean.FALSE, compiled.get("counter.count * 2"));
+    }
+
+    /**
+     * 读取表达式指标不会触发编译：MIXED模式下执行前反复读取指标，之后仍然按阈值正常编译
+     */
+    @Test
+    void should_not_compile_when_reading_expression_metrics() {
+        StringTemplateResolverProperties properties = new StringTemplateResolverProperties();
+        properties.setCompilerMode(SpelCompilerMode.MIXED);
+        StringTemplateResolver resolver = StringTemplateResolver.create(properties);
+        Person person = new Person("li si", 18, "sz", null);
+        MultiContext context = MultiContext.of().add("person", person);
+        resolver.parse("#{person.age * 2}", context);
+
+        for (int i = 0; i < 200; i++) {
+            Assertions.assertFalse(resolver.getExpressionMetrics().get(0).isCompiled());
+        }
+        for (int i = 0; i < 500; i++) {
+            assertEquals("36", resolver.parse("#{person.age * 2}", context));
+        }
+        List<ExpressionMetrics> metrics = resolver.getExpressionMetrics();
+        assertEquals(1, metrics.size());
+        Assertions.assertTrue(metrics.get(0).isCompiled());
+    }
+
+    /**
+     * 生成的bean属性读取函数，包括基本类型的属性
+     */
+    @Test
+    void should_read_bean_property() throws Exception {
+        Person person = new Person("zhang san", 18, null, "北京");
+        StringTemplateResolver.PropertyReadable name = new StringTemplateResolver.PropertyReadable(
+            new PropertyDescriptor("name", Person.class, "getName", null));
+        StringTemplateResolver.PropertyReadable age = new StringTemplateResolver.PropertyReadable(
+            new PropertyDescriptor("age", Person.class, "getAge", null));
+        StringTemplateResolver.PropertyReadable addr = new StringTemplateResolver.PropertyReadable(
+            new PropertyDescriptor("addr", Person.class, "getAddr", null));
+
+        assertEquals("zhang san", name.readString(person));
+        assertEquals("18", age.readString(person));
+        Assertions.assertNull(addr.readString(person));
+    }
+
+    /**
+     * 直接写入Appendable、ByteBuffer
+     */
+    @Test
+    void should_render_to_appendable_and_byte_buffer() {
+        Person person = new Person("张三\uD83D\uDE00", 18, "sz", null);
+        MultiContext context = MultiContext.of().add("person", person);
+        String template = "name=${person}, #{person.name} age #{person.age + 1}";
+        String expected = templateResolver.parse(template, context);
+
+        StringWriter writer = templateResolver.render(template, context, new StringWriter());
+        assertEquals(expected, writer.toString());
+
+        ByteBuffer buffer = templateResolver.render(template, context, ByteBuffer.allocate(256));
+        buffer.flip();
+        assertEquals(expected, StandardCharsets.UTF_8.decode(buffer).toString());
+
+        Assertions.assertThrows(BufferOverflowException.class,
+            () -> templateResolver.render(template, context, ByteBuffer.allocate(8)));
+    }
+
+    /**
+     * 批量解析，结果按顺序返回，单个失败不影响整体
+     */
+    @Test
+    void should_parse_all_in_parallel() {
+        List<Object> contexts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            contexts.add(MultiContext.of().add("user", new Person("name" + i, i, null, null)));
+        }
+        // 缺少user，表达式执行失败
+        contexts.set(10, MultiContext.of());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<BatchResult<String>> results = templateResolver.parseAll(
+                "#{user.name}:#{user.age}", contexts, pool);
+            assertEquals(1000, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                BatchResult<String> result = results.get(i);
+                assertEquals(i, result.getIndex());
+                if (i == 10) {
+                    Assertions.assertFalse(result.isSuccess());
+                    Assertions.assertTrue(result.getError() instanceof StringResolveException);
+                } else {
+                    assertEquals("name" + i + ":" + i, result.getValue());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 单个上下文抛出Error也只记录在对应的结果中；在同一个有界执行器的线程中批量解析不会死锁
+     */
+    @Test
+    void should_parse_all_with_error_on_same_executor() throws Exception {
+        List<Object> contexts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            contexts.add(MultiContext.of().add("user", new Person("name" + i, i, null, null)));
+        }
+        contexts.set(10, MultiContext.of().add("user", () -> {
+            throw new StackOverflowError();
+        }));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<BatchResult<String>> results = executor.submit(
+                () -> templateResolver.parseAll("#{user.name}", contexts, executor)).get(10, TimeUnit.SECONDS);
+            assertEquals(100, results.size());
+            for (BatchResult<String> result : results) {
+                if (result.getIndex() == 10) {
+                    Assertions.assertTrue(result.getError() instanceof StringResolveException);
+                    Throwable cause = result.getError();
+                    while (cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
+                    Assertions.assertTrue(cause instanceof StackOverflowError);
+                } else {
+                    assertEquals("name" + result.getIndex(), result.getValue());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 上下文提供者最多执行一次，并且可以知道哪些提供者被执行了
+     */
+    @Test
+    void should_load_multi_context_provider_once() {
+        AtomicInteger loadCount = new AtomicInteger();
+        MultiContext context = MultiContext.of()
+            .add("user", () -> {
+                loadCount.incrementAndGet();
+                return new Person("zhang san", 18, "sz", null);
+            }, true)
+            .add("unused", () -> {
+                throw new IllegalStateException("should not be loaded");
+            });
+
+        String value = templateResolver.parse("#{user.name}-#{user.age}-#{user.addr}", context);
+        assertEquals("zhang san-18-sz", value);
+        assertEquals(1, loadCount.get());
+        assertEquals(Collections.singleton("user"), context.getTriggeredProviders());
+    }
+
+    /**
+     * 父子上下文：查找时先子后父，写入只写子上下文，冻结后父上下文不能修改
+     */
+    @Test
+    void should_parse_overlay_multi_context() {
+        MultiContext base = MultiContext.of()
+            .add("tenant", "t1")
+            .add("name", "base")
+            .add("config", () -> Collections.singletonMap("lang", "zh"))
+            .freeze();
+        MultiContext request = MultiContext.of(base)
+            .add("name", "zhang san");
+
+        assertEquals("t1 zhang san zh", templateResolver.parse("${tenant} ${name} #{config.lang}", request));
+        assertEquals("t1 base zh", templateResolver.parse("#{tenant} #{name} #{config.lang}", base));
+        Assertions.assertThrows(IllegalStateException.class, () -> base.add("x", 1));
+        Assertions.assertEquals(Collections.singleton("config"), base.getTriggeredProviders());
+        Assertions.assertTrue(request.getTriggeredProviders().isEmpty());
+    }
+
+    /**
+     * 开启统计后按模板记录调用次数、失败次数、缓存命中、分阶段耗时
+     */
+    @Test
+    void should_record_template_stats() {
+        StringTemplateResolverProperties properties = new StringTemplateResolverProperties();
+        properties.setInstrumentationEnabled(true);
+        StringTemplateResolver resolver = StringTemplateResolver.create(properties);
+        Assertions.assertNull(templateResolver.getInstrumentation());
+
+        String template = "${name}-#{age + 1}";
+        Map<String, Object> context = new HashMap<>();
+        context.put("name", "zhang san");
+        context.put("age", 17);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("zhang san-18", resolver.parse(template, context));
+        }
+        context.remove("name");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> resolver.parse(template, context, true));
+
+        List<TemplateStats> snapshot = resolver.getInstrumentation().snapshot();
+        assertEquals(1, snapshot.size());
+        TemplateStats stats = snapshot.get(0);
+        assertEquals(template, stats.getName());
+        assertEquals(11, stats.getCalls());
+        assertEquals(1, stats.getErrors());
+        assertEquals(10, stats.getCacheHits());
+        assertEquals(1, stats.getCacheMisses());
+        assertEquals(11, stats.getLatency().getCount());
+        assertEquals(11, stats.getExpressionLatency().getCount());
+        Assertions.assertTrue(stats.getLatency().getP99() <= stats.getLatency().getMax());
+        Assertions.assertTrue(stats.getLatency().getP50() > 0);
+    }
+
+    private static class Counter {
+        private final int count;
+
+        Counter(int count) {
+            this.count = count;
+        }
+
+        public int getCount() {
+            return count;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package com.myszh.samples.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author LuoQuan
+ * @since 2022/6/27
+ */
+class TemplateSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 加载快照后模板执行计划已在缓存中，解析结果与直接编译一致
+     */
+    @Test
+    void should_load_warm_plans() {
+        Map<String, String> templates = new LinkedHashMap<>();
+        templates.put("msg.user.name", "张三${suffix}");
+        templates.put("msg.user.nick", "${nick:${name${index}:无名}}");
+        templates.put("msg.user.age", "#{age + 1}岁");
+        templates.put("msg.user.score", "#{${base}*2}");
+        templates.put("msg.user.girl", "true");
+        templates.put("msg.user.empty", "");
+        Path file = directory.resolve("templates.snapshot");
+        TemplateSnapshot.write(templates, StringTemplateResolver.getInstance(), file);
+
+        StringTemplateResolver resolver = StringTemplateResolver.create(new StringTemplateResolverProperties());
+        TemplateSnapshot snapshot = TemplateSnapshot.load(file, resolver);
+        assertEquals(templates, snapshot.getTemplates());
+        assertEquals(6, resolver.getPlanCacheMetrics().getSize());
+
+        Map<String, Object> context = new HashMap<>();
+        context.put("suffix", "_sz");
+        context.put("index", "1");
+        context.put("name1", "小张");
+        context.put("age", 17);
+        context.put("base", "21");
+        templates.values().forEach(template -> assertEquals(
+            StringTemplateResolver.getInstance().parse(template, context), resolver.parse(template, context)));
+        assertEquals("小张", resolver.parse(templates.get("msg.user.nick"), context));
+        assertEquals("18岁", resolver.parse(templates.get("msg.user.age"), context));
+        assertEquals(0, resolver.getPlanCacheMetrics().getMissCount());
+    }
+}
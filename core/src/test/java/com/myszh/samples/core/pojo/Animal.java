@@ -23,4 +23,9 @@ public class Animal {
     private BigDecimal weight;
 
     private Organ heart;
+
+    /**
+     * 只有getter，绑定到已有对象上
+     */
+    private final Organ brain = new Organ();
 }
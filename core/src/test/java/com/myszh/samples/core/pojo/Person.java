@@ -0,0 +1,33 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.core.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * 模板解析使用的bean上下文，addr2用于嵌套解析
+ *
+ * @author LuoQuan
+ * @since 2022/6/19
+ */
+@Data
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+@Accessors(chain = true)
+public class Person {
+
+    private String name;
+
+    private int age;
+
+    private String addr;
+
+    private String addr2;
+}
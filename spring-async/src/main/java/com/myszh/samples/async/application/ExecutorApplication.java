@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.application;
+
+import com.myszh.samples.async.core.ExecutorChange;
+import com.myszh.samples.async.core.ExecutorFactory;
+import com.myszh.samples.async.core.ExecutorSnapshot;
+import com.myszh.samples.async.core.PoolSizingDecision;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+/**
+ * ExecutorFactory创建的Executor的状态，运行时修改线程池配置见{@link ExecutorReconfigurationApplication}
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+@RestController
+@RequestMapping("/executors")
+public class ExecutorApplication {
+
+    @Resource
+    private ExecutorFactory executorFactory;
+
+    /**
+     * 所有已经创建的Executor的状态：线程数、队列长度、任务数、拒绝次数、排队时间、执行时间
+     *
+     * @return 状态快照
+     */
+    @GetMapping
+    public List<ExecutorSnapshot> executors() {
+        return executorFactory.getExecutorSnapshots();
+    }
+
+    /**
+     * 某个Executor的状态
+     *
+     * @param name Executor名称
+     * @return 状态快照，没有创建时返回404
+     */
+    @GetMapping("/{name}")
+    public ResponseEntity<ExecutorSnapshot> executor(@PathVariable("name") String name) {
+        return ResponseEntity.of(executorFactory.getExecutorSnapshot(name));
+    }
+
+    /**
+     * 某个Executor最近的自动调整线程数的决策
+     *
+     * @param name Executor名称
+     * @return 决策，按时间先后排列
+     */
+    @GetMapping("/{name}/decisions")
+    public List<PoolSizingDecision> decisions(@PathVariable("name") String name) {
+        return executorFactory.getAdaptivePoolController().getDecisions(name);
+    }
+
+    /**
+     * 某个Executor最近的配置修改
+     *
+     * @param name Executor名称
+     * @return 修改记录，按时间先后排列
+     */
+    @GetMapping("/{name}/changes")
+    public List<ExecutorChange> changes(@PathVariable("name") String name) {
+        return executorFactory.getExecutorChanges(name);
+    }
+}
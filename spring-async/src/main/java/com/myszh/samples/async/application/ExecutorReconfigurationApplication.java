@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.application;
+
+import com.myszh.samples.async.core.ExecutorChange;
+import com.myszh.samples.async.core.ExecutorFactory;
+import com.myszh.samples.async.core.ExecutorReconfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * 运行时修改线程池配置。可以改变整个应用的并发能力，默认不开启，
+ * 配置application.task.executor.reconfigure-enabled=true开启，并且应该只对认证的用户开放
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+@RestController
+@RequestMapping("/executors")
+@ConditionalOnProperty(prefix = "application.task.executor", name = "reconfigure-enabled", havingValue = "true")
+public class ExecutorReconfigurationApplication {
+
+    /**
+     * 没有认证时的操作人
+     */
+    private static final String ANONYMOUS = "anonymous";
+
+    @Resource
+    private ExecutorFactory executorFactory;
+
+    /**
+     * 运行时修改线程池的配置，为null的属性不修改。操作人为请求的认证用户，没有认证时为{@value #ANONYMOUS}，
+     * 不使用客户端地址：经过代理时是代理的地址，按转发头解析时可以伪造
+     *
+     * @param name          Executor名称
+     * @param configuration 修改的配置
+     * @param request       请求
+     * @return 修改的属性，没有创建时返回404，配置不合法时返回400，不是线程池或者队列容量不能修改时返回409
+     */
+    @PatchMapping("/{name}")
+    public ResponseEntity<List<ExecutorChange>> reconfigure(@PathVariable("name") String name,
+                                                            @RequestBody ExecutorReconfiguration configuration,
+                                                            HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        String operator = principal != null && principal.getName() != null ? principal.getName() : ANONYMOUS;
+        return ResponseEntity.of(executorFactory.reconfigure(name, configuration, operator));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> invalidConfiguration(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler(UnsupportedOperationException.class)
+    public ResponseEntity<String> unsupportedConfiguration(UnsupportedOperationException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import com.myszh.samples.async.core.ExecutorFactoryProperties.Adaptive;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 按排队时间自动调整线程池的核心线程数
+ * <p>
+ * 每个间隔采样一次提交数、完成数、排队时间、执行时间，然后决策：
+ * <li>平均排队时间超过目标：增加线程，至少加1，按利特尔法则(L = λW)需要的线程数，最多翻倍；
+ * 线程数已经达到利特尔法则需要的线程数并且队列在减少时不调整
+ * <li>利用率低并且队列为空：减少线程，每次最多减少1/4，不低于利特尔法则需要的线程数
+ * <li>其他：不调整
+ * <p>
+ * 结果限制在[minSize, maxSize]之内，并且不超过线程池的最大线程数，每次决策都记录日志并保留最近的{@value #MAXIMUM_DECISIONS}条
+ * <p>
+ * 只调整核心线程数，最大线程数是配置(或运行时修改)的上限，不自动调整：
+ * 队列有边界时只有队列满了才会创建核心线程数以外的线程，决定并发度的是核心线程数
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+@Slf4j
+public class AdaptivePoolController implements DisposableBean {
+
+    private static final int MAXIMUM_DECISIONS = 200;
+
+    private final Map<String, ControlledPool> controlled = new ConcurrentHashMap<>();
+
+    private final Deque<PoolSizingDecision> decisions = new ArrayDeque<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 开始自动调整线程池
+     *
+     * @param name             Executor名称
+     * @param executor         线程池
+     * @param timer            线程池的TaskDecorator
+     * @param adaptive 自动调整配置
+     */
+    public synchronized void register(String name, ThreadPoolTaskExecutor executor, TaskTimer timer,
+                                      Adaptive adaptive) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "adaptive-pool-controller");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        // 利用率需要包括正在执行的任务
+        timer.trackBusyTime();
+        ControlledPool pool = new ControlledPool(name, executor, timer, adaptive);
+        long interval = adaptive.getInterval().toMillis();
+        pool.future = scheduler.scheduleWithFixedDelay(pool::adjust, interval, interval, TimeUnit.MILLISECONDS);
+        ControlledPool previous = controlled.put(name, pool);
+        if (previous != null) {
+            previous.future.cancel(false);
+        }
+    }
+
+    /**
+     * 最近的决策，按时间先后排列
+     *
+     * @return List
+     */
+    public List<PoolSizingDecision> getDecisions() {
+        synchronized (decisions) {
+            return new ArrayList<>(decisions);
+        }
+    }
+
+    /**
+     * 某个Executor最近的决策
+     *
+     * @param name Executor名称
+     * @return List
+     */
+    public List<PoolSizingDecision> getDecisions(String name) {
+        return getDecisions().stream()
+            .filter(decision -> decision.getExecutor().equals(name))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        controlled.clear();
+    }
+
+    private void record(PoolSizingDecision decision) {
+        if (decision.getNewSize() != decision.getPreviousSize()) {
+            log.info("Resize executor [{}] {} -> {}: {}", decision.getExecutor(), decision.getPreviousSize(),
+                decision.getNewSize(), decision.getReason());
+        } else if (log.isDebugEnabled()) {
+            log.debug("Keep executor [{}] size {}: {}", decision.getExecutor(), decision.getNewSize(),
+                decision.getReason());
+        }
+        synchronized (decisions) {
+            if (decisions.size() == MAXIMUM_DECISIONS) {
+                decisions.removeFirst();
+            }
+            decisions.addLast(decision);
+        }
+    }
+
+    /**
+     * 根据一个间隔内的统计决策核心线程数
+     *
+     * @param name          Executor名称
+     * @param adaptive      自动调整配置
+     * @param size          当前核心线程数
+     * @param maxSize       当前最大线程数，核心线程数不会超过
+     * @param last          间隔开始时的快照
+     * @param current       间隔结束时的快照
+     * @param queueSize     当前队列中的任务数
+     * @param lastQueueSize 间隔开始时队列中的任务数
+     * @return PoolSizingDecision
+     */
+    static PoolSizingDecision decide(String name, Adaptive adaptive, int size, int maxSize,
+                                     TaskTimer.Sample last, TaskTimer.Sample current,
+                                     int queueSize, int lastQueueSize) {
+        double seconds = Math.max(current.getNanoTime() - last.getNanoTime(), 1) / 1e9;
+        long submitted = current.getSubmitted() - last.getSubmitted();
+        long started = current.getStarted() - last.getStarted();
+        long completed = current.getCompleted() - last.getCompleted();
+        long runNanos = current.getRunNanos() - last.getRunNanos();
+        long busyNanos = current.getBusyNanos() - last.getBusyNanos();
+
+        double arrivalRate = submitted / seconds;
+        double throughput = completed / seconds;
+        double averageRunMillis = completed == 0 ? 0 : runNanos / 1e6 / completed;
+        double averageWaitMillis = started == 0
+            // 所有线程都在执行长任务，没有任务开始，排队时间至少是整个间隔
+            ? (queueSize > 0 ? seconds * 1000 : 0)
+            : (current.getWaitNanos() - last.getWaitNanos()) / 1e6 / started;
+        // 包括正在执行的任务在这个间隔内的执行时间，否则长任务执行期间利用率为0
+        double utilization = busyNanos / 1e9 / seconds / Math.max(size, 1);
+        double targetWaitMillis = adaptive.getTargetQueueWait().toNanos() / 1e6;
+        // 利特尔法则：平均忙碌线程数 = 到达率 * 平均执行时间
+        int littleSize = (int) Math.ceil(arrivalRate * averageRunMillis / 1000 * (1 + adaptive.getHeadroom()));
+
+        int newSize = size;
+        String reason;
+        if (averageWaitMillis > targetWaitMillis && size >= littleSize && queueSize < lastQueueSize) {
+            // 线程数已经足够，排队时间是之前积压的任务造成的，队列正在减少
+            reason = String.format("average wait %.1fms > target %.1fms, backlog draining",
+                averageWaitMillis, targetWaitMillis);
+        } else if (averageWaitMillis > targetWaitMillis) {
+            newSize = Math.min(size * 2, Math.max(size + 1, littleSize));
+            reason = String.format("average wait %.1fms > target %.1fms", averageWaitMillis, targetWaitMillis);
+        } else if (utilization < adaptive.getLowUtilization() && queueSize == 0) {
+            newSize = Math.min(size, Math.max(littleSize, size - Math.max(1, size / 4)));
+            reason = String.format("utilization %.2f < %.2f", utilization, adaptive.getLowUtilization());
+        } else {
+            reason = "within target";
+        }
+        // 不超过线程池的最大线程数，最大线程数由配置决定，不自动调整
+        int upper = Math.min(adaptive.getMaxSize(), maxSize);
+        newSize = Math.max(Math.min(adaptive.getMinSize(), upper), Math.min(upper, newSize));
+        return new PoolSizingDecision(name, Instant.now(), size, newSize, arrivalRate, throughput,
+            averageWaitMillis, averageRunMillis, utilization, queueSize, reason);
+    }
+
+    /**
+     * 自动调整的线程池
+     */
+    private final class ControlledPool {
+
+        private final String name;
+
+        private final ThreadPoolTaskExecutor executor;
+
+        private final TaskTimer timer;
+
+        private final Adaptive adaptive;
+
+        private volatile ScheduledFuture<?> future;
+
+        private TaskTimer.Sample previous;
+
+        private int previousQueueSize;
+
+        ControlledPool(String name, ThreadPoolTaskExecutor executor, TaskTimer timer, Adaptive adaptive) {
+            this.name = name;
+            this.executor = executor;
+            this.timer = timer;
+            this.adaptive = adaptive;
+        }
+
+        void adjust() {
+            try {
+                PoolSizingDecision decision = decide();
+                if (decision != null) {
+                    resize(decision.getNewSize());
+                    record(decision);
+                }
+            } catch (Exception e) {
+                log.warn("Adjust executor [{}] failed", name, e);
+            }
+        }
+
+        private PoolSizingDecision decide() {
+            ThreadPoolExecutor pool;
+            try {
+                pool = executor.getThreadPoolExecutor();
+            } catch (IllegalStateException e) {
+                // 还没有初始化
+                return null;
+            }
+            if (pool.isShutdown()) {
+                if (controlled.remove(name, this)) {
+                    future.cancel(false);
+                }
+                return null;
+            }
+
+            TaskTimer.Sample current = timer.sample();
+            TaskTimer.Sample last = previous;
+            previous = current;
+            int queueSize = pool.getQueue().size();
+            int lastQueueSize = previousQueueSize;
+            previousQueueSize = queueSize;
+            if (last == null) {
+                return null;
+            }
+            return AdaptivePoolController.decide(name, adaptive, pool.getCorePoolSize(), pool.getMaximumPoolSize(),
+                last, current, queueSize, lastQueueSize);
+        }
+
+        private void resize(int newSize) {
+            // 与运行时修改配置互斥，期间最大线程数可能被改小
+            synchronized (executor) {
+                int size = Math.min(newSize, executor.getMaxPoolSize());
+                if (size != executor.getCorePoolSize()) {
+                    executor.setCorePoolSize(size);
+                }
+            }
+        }
+    }
+}
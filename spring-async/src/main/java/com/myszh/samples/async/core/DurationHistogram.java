@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的耗时直方图：每个2的幂区间再等分为{@value #SUB_BUCKETS}个桶，相对误差不超过1/8
+ * <p>
+ * 每个桶是第一次记录时创建的LongAdder，多个工作线程记录到同一个桶时不争用同一个缓存行
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+final class DurationHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<>(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        bucket(index(value)).increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    DurationSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            LongAdder bucket = buckets.get(i);
+            counts[i] = bucket == null ? 0 : bucket.sum();
+            total += counts[i];
+        }
+        long maxNanos = max.get();
+        return new DurationSnapshot(total,
+            total == 0 ? 0 : toMillis(sum.sum() / total),
+            toMillis(percentile(counts, total, 0.5, maxNanos)),
+            toMillis(percentile(counts, total, 0.9, maxNanos)),
+            toMillis(percentile(counts, total, 0.99, maxNanos)),
+            toMillis(maxNanos));
+    }
+
+    private LongAdder bucket(int index) {
+        LongAdder bucket = buckets.get(index);
+        if (bucket == null) {
+            buckets.compareAndSet(index, null, new LongAdder());
+            bucket = buckets.get(index);
+        }
+        return bucket;
+    }
+
+    private static long percentile(long[] counts, long total, double percentile, long maxNanos) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) * width + width - 1;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+}
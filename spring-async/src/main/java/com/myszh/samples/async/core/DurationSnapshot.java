@@ -0,0 +1,29 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import lombok.Value;
+
+/**
+ * 耗时分布的快照，单位毫秒
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+@Value
+public class DurationSnapshot {
+
+    long count;
+
+    double meanMillis;
+
+    double p50Millis;
+
+    double p90Millis;
+
+    double p99Millis;
+
+    double maxMillis;
+}
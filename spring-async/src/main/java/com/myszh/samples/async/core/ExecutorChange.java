@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * 运行时修改Executor配置的审计记录，每个修改的属性一条
+ *
+ * @author LuoQuan
+ * @since 2022/6/30
+ */
+@Value
+public class ExecutorChange {
+
+    /**
+     * Executor名称
+     */
+    String executor;
+
+    /**
+     * 修改时间
+     */
+    Instant time;
+
+    /**
+     * 操作人
+     */
+    String operator;
+
+    /**
+     * 修改原因
+     */
+    String reason;
+
+    /**
+     * 属性名称，与配置文件中pool下的属性名称一致
+     */
+    String property;
+
+    /**
+     * 修改前的值
+     */
+    String previousValue;
+
+    /**
+     * 修改后的值
+     */
+    String newValue;
+}
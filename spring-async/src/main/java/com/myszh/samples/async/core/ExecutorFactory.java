@@ -4,8 +4,13 @@
 
 package com.myszh.samples.async.core;
 
+import com.myszh.samples.async.core.ExecutorFactoryProperties.Adaptive;
+import com.myszh.samples.async.core.ExecutorFactoryProperties.ExecutorBeanDefinition;
 import com.myszh.samples.async.core.ExecutorFactoryProperties.ExecutorDefinition;
+import com.myszh.samples.async.core.ExecutorFactoryProperties.ExecutorType;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
@@ -21,15 +26,28 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.task.TaskDecorator;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Executor工厂
@@ -37,14 +55,22 @@ import java.util.function.Supplier;
  * @author LuoQuan
  * @since 2022/6/14
  */
+@Slf4j
 public class ExecutorFactory implements BeanDefinitionRegistryPostProcessor,
-    EnvironmentAware, ApplicationContextAware, InitializingBean {
+    EnvironmentAware, ApplicationContextAware, InitializingBean, DisposableBean {
+
+    private static final int MAXIMUM_CHANGES = 200;
 
     private final Map<String, RejectedExecutionHandler> rejectedHandler = new HashMap<>(8);
     private ExecutorFactoryProperties executorFactoryProperties;
     private ApplicationContext applicationContext;
     @Getter
     private Supplier<Executor> primaryExecutorSupplier;
+    @Getter
+    private final AdaptivePoolController adaptivePoolController = new AdaptivePoolController();
+    private final Map<String, ExecutorMetrics> executorMetrics = new ConcurrentHashMap<>();
+    private final Map<String, String> rejectedPolicies = new ConcurrentHashMap<>();
+    private final Deque<ExecutorChange> executorChanges = new ArrayDeque<>();
 
     public ExecutorFactory() {
         addRejectedHandler(new ThreadPoolExecutor.AbortPolicy());
@@ -75,6 +101,11 @@ public class ExecutorFactory implements BeanDefinitionRegistryPostProcessor,
             executorFactoryProperties.getDefaultExecutor());
     }
 
+    @Override
+    public void destroy() {
+        adaptivePoolController.destroy();
+    }
+
     @Override
     public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
         // do nothing
@@ -113,6 +144,7 @@ public class ExecutorFactory implements BeanDefinitionRegistryPostProcessor,
      */
     @SuppressWarnings({"unchecked"})
     public <E extends Executor> Supplier<E> executorInstanceSupplier(ExecutorDefinition properties) {
+        validate(properties);
         ObjectProvider<TaskDecorator> taskDecorator =
             applicationContext.getBeanProvider(TaskDecorator.class);
         ObjectProvider<TaskExecutorCustomizer> taskExecutorCustomizers =
@@ -132,21 +164,390 @@ public class ExecutorFactory implements BeanDefinitionRegistryPostProcessor,
             .customizers(taskExecutorCustomizers.orderedStream()::iterator)
             .taskDecorator(taskDecorator.getIfUnique());
         return () -> {
-            ThreadPoolTaskExecutor executor = builder.build();
+            ResizableThreadPoolTaskExecutor executor = builder.build(ResizableThreadPoolTaskExecutor.class);
             // 设置线程池的一些其他属性
             executor.setDaemon(properties.isDaemon());
 
-            // 拒绝策略
-            String rejectedExecutionHandler = properties.getRejectedExecutionHandler();
-            RejectedExecutionHandler rejected;
-            if (applicationContext.containsBean(rejectedExecutionHandler)) {
-                rejected = applicationContext.getBean(rejectedExecutionHandler, RejectedExecutionHandler.class);
+            // 统计：包装经过定制的TaskDecorator，记录每个任务的排队时间、执行时间
+            String name = getExecutorName(properties);
+            ExecutorMetrics metrics = new ExecutorMetrics(name, executor.getTaskDecorator());
+            executor.setTaskDecorator(metrics);
+            executorMetrics.put(name, metrics);
+
+            Executor instance = createExecutor(executor, properties, metrics);
+            metrics.bind(instance);
+            return (E) instance;
+        };
+    }
+
+    /**
+     * 启动时校验配置，懒加载的Executor也不会等到第一次使用时才失败
+     *
+     * @param properties 相关属性
+     * @throws IllegalArgumentException 配置不合法
+     */
+    private void validate(ExecutorDefinition properties) {
+        int concurrencyLimit = properties.getConcurrencyLimit();
+        // 0表示不允许执行任何任务，-1以外的负数没有意义
+        if (concurrencyLimit == 0 || concurrencyLimit < -1) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid concurrency-limit of executor [%s]: %d, must be -1 (unlimited) or positive",
+                getExecutorName(properties), concurrencyLimit));
+        }
+        // 自定义的拒绝策略需要ThreadPoolExecutor，ForkJoinPool只支持内置的策略
+        if (properties.getType() == ExecutorType.FORK_JOIN
+            && !rejectedHandler.containsKey(properties.getRejectedExecutionHandler())) {
+            throw new IllegalArgumentException(String.format(
+                "Unsupported rejected-execution-handler of fork join executor [%s]: %s, must be one of %s",
+                getExecutorName(properties), properties.getRejectedExecutionHandler(), rejectedHandler.keySet()));
+        }
+        // 自动调整的核心线程数不超过线程池的最大线程数，ForkJoinPool不支持自动调整
+        Adaptive adaptive = properties.getAdaptive();
+        int maxSize = Math.min(adaptive.getMaxSize(), properties.getPool().getMaxSize());
+        if (adaptive.isEnabled() && properties.getType() != ExecutorType.FORK_JOIN
+            && (adaptive.getMinSize() < 1 || adaptive.getMinSize() > maxSize)) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid adaptive min-size of executor [%s]: %d, must be in [1, %d] "
+                    + "(the smaller of adaptive.max-size and pool.max-size)",
+                getExecutorName(properties), adaptive.getMinSize(), maxSize));
+        }
+    }
+
+    /**
+     * 按类型创建Executor
+     *
+     * @param executor   经过定制的线程池
+     * @param properties 相关属性
+     * @param metrics    统计
+     * @return Executor
+     */
+    private Executor createExecutor(ResizableThreadPoolTaskExecutor executor, ExecutorDefinition properties,
+                                    ExecutorMetrics metrics) {
+        String policy = getRejectedPolicyName(properties.getRejectedExecutionHandler());
+        RejectedExecutionHandler rejected = getRejectedExecutionHandler(policy);
+        if (properties.getType() == ExecutorType.FORK_JOIN) {
+            ForkJoinTaskExecutor forkJoinExecutor = forkJoinExecutor(executor, properties, rejected);
+            forkJoinExecutor.setRejectionListener(() -> metrics.recordRejection(policy));
+            warnIfAdaptive(properties, metrics.getName());
+            return forkJoinExecutor;
+        }
+        if (properties.getType() == ExecutorType.VIRTUAL) {
+            if (VirtualThreads.isSupported()) {
+                warnIfAdaptive(properties, metrics.getName());
+                return virtualThreadExecutor(executor, properties, metrics);
+            }
+            log.warn("Virtual threads are not supported on Java {}, executor [{}] falls back to thread pool",
+                System.getProperty("java.version"), metrics.getName());
+        }
+
+        // 拒绝策略
+        executor.setRejectedExecutionHandler(metrics.countRejections(policy, rejected));
+        rejectedPolicies.put(metrics.getName(), policy);
+        if (properties.getAdaptive().isEnabled()) {
+            adaptivePoolController.register(metrics.getName(), executor, metrics, properties.getAdaptive());
+        }
+        return executor;
+    }
+
+    private static void warnIfAdaptive(ExecutorDefinition properties, String name) {
+        if (properties.getAdaptive().isEnabled()) {
+            log.warn("Adaptive sizing only supports thread pool, ignored for executor [{}]", name);
+        }
+    }
+
+    /**
+     * 所有已经创建的Executor的状态快照，按名称排序。懒加载还没有创建的Executor不包含在内
+     *
+     * @return List
+     */
+    public List<ExecutorSnapshot> getExecutorSnapshots() {
+        return executorMetrics.values().stream()
+            .map(ExecutorMetrics::snapshot)
+            .sorted(Comparator.comparing(ExecutorSnapshot::getName))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 某个Executor的状态快照
+     *
+     * @param name Executor名称
+     * @return 没有创建时为empty
+     */
+    public Optional<ExecutorSnapshot> getExecutorSnapshot(String name) {
+        return Optional.ofNullable(executorMetrics.get(name)).map(ExecutorMetrics::snapshot);
+    }
+
+    /**
+     * 运行时修改线程池的配置：线程数、存活时间、队列容量、拒绝策略，正在执行和已经入队的任务不受影响。
+     * 先校验所有修改，都合法才生效，每个修改的属性记录一条审计日志
+     * <p>
+     * 开启自动调整时，之后核心线程数仍然会被自动调整，不超过修改后的最大线程数。
+     * 只修改最大线程数并且小于当前(可能已经被自动调整的)核心线程数时，核心线程数随之减小
+     *
+     * @param name          Executor名称
+     * @param configuration 修改的配置，为null的属性不修改
+     * @param operator      操作人
+     * @return 修改的属性，Executor还没有创建时为empty
+     * @throws IllegalArgumentException      配置不合法
+     * @throws UnsupportedOperationException 不是线程池，或者修改使用SynchronousQueue的线程池的队列容量
+     */
+    public synchronized Optional<List<ExecutorChange>> reconfigure(String name, ExecutorReconfiguration configuration,
+                                                                   String operator) {
+        ExecutorMetrics metrics = executorMetrics.get(name);
+        if (metrics == null) {
+            return Optional.empty();
+        }
+        if (!(metrics.getExecutor() instanceof ResizableThreadPoolTaskExecutor)) {
+            throw new UnsupportedOperationException("Executor [" + name + "] is " + metrics.snapshot().getType()
+                + ", only thread pool can be reconfigured");
+        }
+        ResizableThreadPoolTaskExecutor executor = (ResizableThreadPoolTaskExecutor) metrics.getExecutor();
+        int maxSize = Optional.ofNullable(configuration.getMaxSize()).orElse(executor.getMaxPoolSize());
+        int coreSize = Optional.ofNullable(configuration.getCoreSize())
+            .orElseGet(() -> Math.min(executor.getCorePoolSize(), maxSize));
+        int keepAliveSeconds = Optional.ofNullable(configuration.getKeepAlive())
+            .map(keepAlive -> toKeepAliveSeconds(name, keepAlive))
+            .orElse(executor.getKeepAliveSeconds());
+        Integer queueCapacity = configuration.getQueueCapacity();
+        String policy = configuration.getRejectedExecutionHandler();
+
+        if (coreSize < 0 || maxSize <= 0 || coreSize > maxSize) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid pool size of executor [%s]: core-size=%d, max-size=%d", name, coreSize, maxSize));
+        }
+        if (keepAliveSeconds < 0 || keepAliveSeconds == 0 && allowsCoreThreadTimeOut(executor)) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid keep-alive of executor [%s]: %ds", name, keepAliveSeconds));
+        }
+        if (queueCapacity != null && queueCapacity <= 0) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid queue-capacity of executor [%s]: %d", name, queueCapacity));
+        }
+        if (queueCapacity != null && executor.getQueueCapacity() <= 0) {
+            throw new UnsupportedOperationException(String.format(
+                "Executor [%s] uses SynchronousQueue, queue-capacity cannot be changed", name));
+        }
+        if (policy != null && !applicationContext.containsBean(policy) && !rejectedHandler.containsKey(policy)) {
+            throw new IllegalArgumentException(String.format(
+                "Unknown rejected-execution-handler of executor [%s]: %s", name, policy));
+        }
+
+        Audit audit = new Audit(name, operator, configuration.getReason());
+        // 与自动调整线程数互斥
+        synchronized (executor) {
+            int previousCoreSize = executor.getCorePoolSize();
+            int previousMaxSize = executor.getMaxPoolSize();
+            // 任何时候核心线程数都不能大于最大线程数：最大线程数不小于当前核心线程数时先改最大线程数，否则先改核心线程数
+            if (maxSize >= previousCoreSize) {
+                executor.setMaxPoolSize(maxSize);
+                executor.setCorePoolSize(coreSize);
             } else {
-                rejected = rejectedHandler.getOrDefault(rejectedExecutionHandler,
-                    rejectedHandler.get(ThreadPoolExecutor.AbortPolicy.class.getSimpleName()));
+                executor.setCorePoolSize(coreSize);
+                executor.setMaxPoolSize(maxSize);
             }
-            executor.setRejectedExecutionHandler(rejected);
-            return (E) executor;
-        };
+            audit.record("core-size", previousCoreSize, coreSize);
+            audit.record("max-size", previousMaxSize, maxSize);
+        }
+
+        int previousKeepAliveSeconds = executor.getKeepAliveSeconds();
+        executor.setKeepAliveSeconds(keepAliveSeconds);
+        audit.record("keep-alive", Duration.ofSeconds(previousKeepAliveSeconds), Duration.ofSeconds(keepAliveSeconds));
+
+        if (queueCapacity != null) {
+            int previousQueueCapacity = executor.getQueueCapacity();
+            executor.setQueueCapacity(queueCapacity);
+            audit.record("queue-capacity", previousQueueCapacity, queueCapacity);
+        }
+
+        if (policy != null) {
+            executor.setRejectedExecutionHandler(
+                metrics.countRejections(policy, getRejectedExecutionHandler(policy)));
+            audit.record("rejected-execution-handler", rejectedPolicies.put(name, policy), policy);
+        }
+        return Optional.of(audit.changes);
+    }
+
+    /**
+     * 最近的配置修改，按时间先后排列，最多保留{@value #MAXIMUM_CHANGES}条
+     *
+     * @return List
+     */
+    public List<ExecutorChange> getExecutorChanges() {
+        synchronized (executorChanges) {
+            return new ArrayList<>(executorChanges);
+        }
+    }
+
+    /**
+     * 某个Executor最近的配置修改
+     *
+     * @param name Executor名称
+     * @return List
+     */
+    public List<ExecutorChange> getExecutorChanges(String name) {
+        return getExecutorChanges().stream()
+            .filter(change -> change.getExecutor().equals(name))
+            .collect(Collectors.toList());
+    }
+
+    private static boolean allowsCoreThreadTimeOut(ThreadPoolTaskExecutor executor) {
+        return executor.getThreadPoolExecutor().allowsCoreThreadTimeOut();
+    }
+
+    /**
+     * ThreadPoolTaskExecutor的keep-alive单位是秒，不是整秒或者超出int范围时拒绝，不静默截断
+     */
+    private static int toKeepAliveSeconds(String name, Duration keepAlive) {
+        if (keepAlive.getNano() != 0 || keepAlive.getSeconds() < 0 || keepAlive.getSeconds() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid keep-alive of executor [%s]: %s, must be whole seconds between 0 and %d",
+                name, keepAlive, Integer.MAX_VALUE));
+        }
+        return (int) keepAlive.getSeconds();
+    }
+
+    /**
+     * 一次修改的审计：值有变化的属性记录日志并保留
+     */
+    private final class Audit {
+
+        private final String name;
+
+        private final String operator;
+
+        private final String reason;
+
+        private final Instant time = Instant.now();
+
+        private final List<ExecutorChange> changes = new ArrayList<>();
+
+        Audit(String name, String operator, String reason) {
+            this.name = name;
+            this.operator = operator;
+            this.reason = reason;
+        }
+
+        void record(String property, Object previousValue, Object newValue) {
+            String previous = Objects.toString(previousValue, null);
+            String value = Objects.toString(newValue, null);
+            if (Objects.equals(previous, value)) {
+                return;
+            }
+            ExecutorChange change = new ExecutorChange(name, time, operator, reason, property, previous, value);
+            log.info("Reconfigure executor [{}] {}: {} -> {} by {}, reason: {}",
+                name, property, previous, value, operator, reason);
+            changes.add(change);
+            synchronized (executorChanges) {
+                if (executorChanges.size() == MAXIMUM_CHANGES) {
+                    executorChanges.removeFirst();
+                }
+                executorChanges.addLast(change);
+            }
+        }
+    }
+
+    /**
+     * Executor名称：声明的Executor使用bean name，默认Executor使用线程名称前缀
+     *
+     * @param properties 相关属性
+     * @return 名称
+     */
+    private static String getExecutorName(ExecutorDefinition properties) {
+        if (properties instanceof ExecutorBeanDefinition) {
+            return ((ExecutorBeanDefinition) properties).getName();
+        }
+        return properties.getThreadNamePrefix();
+    }
+
+    /**
+     * 拒绝策略名称，没有同名的bean或者内置策略时为AbortPolicy
+     *
+     * @param rejectedExecutionHandler 配置的拒绝策略名称
+     * @return 名称
+     */
+    private String getRejectedPolicyName(String rejectedExecutionHandler) {
+        if (applicationContext.containsBean(rejectedExecutionHandler)
+            || rejectedHandler.containsKey(rejectedExecutionHandler)) {
+            return rejectedExecutionHandler;
+        }
+        return ThreadPoolExecutor.AbortPolicy.class.getSimpleName();
+    }
+
+    /**
+     * 获取拒绝策略：优先使用同名的bean，其次是内置的策略，默认AbortPolicy
+     *
+     * @param rejectedExecutionHandler 拒绝策略名称
+     * @return RejectedExecutionHandler
+     */
+    private RejectedExecutionHandler getRejectedExecutionHandler(String rejectedExecutionHandler) {
+        if (applicationContext.containsBean(rejectedExecutionHandler)) {
+            return applicationContext.getBean(rejectedExecutionHandler, RejectedExecutionHandler.class);
+        }
+        return rejectedHandler.getOrDefault(rejectedExecutionHandler,
+            rejectedHandler.get(ThreadPoolExecutor.AbortPolicy.class.getSimpleName()));
+    }
+
+    /**
+     * ForkJoinPool Executor，线程池先经过TaskExecutorCustomizer定制，再从中获取线程名称前缀、守护线程、TaskDecorator
+     *
+     * @param customized 经过定制的线程池，只用于读取配置，不会初始化
+     * @param properties 相关属性
+     * @param rejected   拒绝策略
+     * @return ForkJoinTaskExecutor
+     */
+    private ForkJoinTaskExecutor forkJoinExecutor(ResizableThreadPoolTaskExecutor customized,
+                                                  ExecutorDefinition properties,
+                                                  RejectedExecutionHandler rejected) {
+        int parallelism = properties.getParallelism() > 0
+            ? properties.getParallelism()
+            : Runtime.getRuntime().availableProcessors();
+        TaskExecutionProperties.Shutdown shutdown = properties.getShutdown();
+        return new ForkJoinTaskExecutor(customized.getThreadNamePrefix(), customized.isDaemon(), parallelism,
+            properties.isAsyncMode(), properties.getPool().getQueueCapacity(), customized.getTaskDecorator(),
+            rejected, shutdown.isAwaitTermination(), shutdown.getAwaitTerminationPeriod());
+    }
+
+    /**
+     * 虚拟线程Executor：每个任务一个虚拟线程，可以限制同时执行的任务数。
+     * 线程池先经过TaskExecutorCustomizer定制，再从中获取线程名称前缀、TaskDecorator
+     *
+     * @param customized 经过定制的线程池，只用于读取配置，不会初始化
+     * @param properties 相关属性
+     * @param metrics    统计
+     * @return SimpleAsyncTaskExecutor
+     */
+    private SimpleAsyncTaskExecutor virtualThreadExecutor(ResizableThreadPoolTaskExecutor customized,
+                                                         ExecutorDefinition properties, ExecutorMetrics metrics) {
+        SimpleAsyncTaskExecutor executor = new VirtualThreadTaskExecutor(
+            VirtualThreads.threadFactory(customized.getThreadNamePrefix()), metrics);
+        executor.setTaskDecorator(customized.getTaskDecorator());
+        executor.setConcurrencyLimit(properties.getConcurrencyLimit());
+        return executor;
+    }
+
+    /**
+     * 虚拟线程Executor，SimpleAsyncTaskExecutor先decorate再等待并发上限，
+     * 等待时被中断或者创建线程失败的任务不会执行，从提交数中减去
+     */
+    private static final class VirtualThreadTaskExecutor extends SimpleAsyncTaskExecutor {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient ExecutorMetrics metrics;
+
+        VirtualThreadTaskExecutor(ThreadFactory threadFactory, ExecutorMetrics metrics) {
+            super(threadFactory);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void execute(Runnable task, long startTimeout) {
+            try {
+                super.execute(task, startTimeout);
+            } catch (RuntimeException e) {
+                metrics.recordDropped();
+                throw e;
+            }
+        }
     }
 }
@@ -8,6 +8,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import org.springframework.boot.autoconfigure.task.TaskExecutionProperties;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -28,6 +29,31 @@ public class ExecutorFactoryProperties {
     @Data
     @EqualsAndHashCode(callSuper = true)
     public static class ExecutorDefinition extends TaskExecutionProperties {
+        /**
+         * Executor类型
+         */
+        private ExecutorType type = ExecutorType.THREAD_POOL;
+
+        /**
+         * 虚拟线程Executor同时执行的最大任务数，达到上限时提交任务的线程阻塞等待，-1表示不限制，其他值必须大于0
+         */
+        private int concurrencyLimit = -1;
+
+        /**
+         * ForkJoinPool的并行度，-1表示CPU核数
+         */
+        private int parallelism = -1;
+
+        /**
+         * ForkJoinPool的队列是否先进先出，@Async的任务不会join，默认true
+         */
+        private boolean asyncMode = true;
+
+        /**
+         * 按排队时间自动调整线程数，只支持THREAD_POOL
+         */
+        private final Adaptive adaptive = new Adaptive();
+
         /**
          * 守护线程
          */
@@ -51,4 +77,69 @@ public class ExecutorFactoryProperties {
 
         private boolean primary = false;
     }
+
+    /**
+     * 自动调整线程数
+     *
+     * @see AdaptivePoolController
+     */
+    @Data
+    public static class Adaptive {
+        /**
+         * 是否开启
+         */
+        private boolean enabled = false;
+
+        /**
+         * 最小线程数
+         */
+        private int minSize = 1;
+
+        /**
+         * 最大线程数，同时不超过pool.max-size
+         */
+        private int maxSize = 100;
+
+        /**
+         * 采样、调整间隔
+         */
+        private Duration interval = Duration.ofSeconds(5);
+
+        /**
+         * 目标平均排队时间，超过时增加线程
+         */
+        private Duration targetQueueWait = Duration.ofMillis(100);
+
+        /**
+         * 利用率(平均忙碌线程数 / 线程数)低于该值并且没有超过目标排队时间时减少线程
+         */
+        private double lowUtilization = 0.5;
+
+        /**
+         * 按利特尔法则计算的线程数之上预留的比例
+         */
+        private double headroom = 0.2;
+    }
+
+    /**
+     * Executor类型
+     */
+    public enum ExecutorType {
+        /**
+         * ThreadPoolTaskExecutor，按pool配置线程数、队列容量
+         */
+        THREAD_POOL,
+        /**
+         * 每个任务一个虚拟线程(Java 21+)，适合大量阻塞IO的任务，pool配置不生效，
+         * 运行环境不支持虚拟线程时退回到THREAD_POOL
+         */
+        VIRTUAL,
+        /**
+         * ForkJoinPool，工作窃取，适合短小的CPU密集型任务。
+         * 已提交未完成的任务数超过 并行度 + pool.queue-capacity 时按拒绝策略处理，只支持内置的拒绝策略
+         *
+         * @see ForkJoinTaskExecutor
+         */
+        FORK_JOIN
+    }
 }
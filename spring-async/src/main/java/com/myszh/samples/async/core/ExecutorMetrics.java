@@ -0,0 +1,164 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import com.myszh.samples.async.core.ExecutorFactoryProperties.ExecutorType;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个Executor的指标：在TaskDecorator上记录每个任务的排队时间、执行时间，
+ * 包装拒绝策略按策略名称统计拒绝次数，快照时再读取线程数、队列长度等实时状态
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+public class ExecutorMetrics extends TaskTimer {
+
+    private static final String CALLER_RUNS_POLICY = ThreadPoolExecutor.CallerRunsPolicy.class.getSimpleName();
+
+    private final String name;
+
+    private final DurationHistogram waitTime = new DurationHistogram();
+
+    private final DurationHistogram runTime = new DurationHistogram();
+
+    private final ConcurrentMap<String, LongAdder> rejected = new ConcurrentHashMap<>();
+
+    private volatile Executor executor;
+
+    /**
+     * @param name     Executor名称
+     * @param delegate 原有的TaskDecorator，可以为null
+     */
+    public ExecutorMetrics(String name, TaskDecorator delegate) {
+        super(delegate);
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 关联统计的Executor，快照时读取实时状态
+     *
+     * @param executor Executor
+     */
+    void bind(Executor executor) {
+        this.executor = executor;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    protected void afterExecute(long submitNanos, long startNanos, long endNanos, boolean success) {
+        waitTime.record(startNanos - submitNanos);
+        runTime.record(endNanos - startNanos);
+    }
+
+    /**
+     * 包装拒绝策略，拒绝时按策略名称计数
+     *
+     * @param policy  策略名称
+     * @param handler 拒绝策略
+     * @return RejectedExecutionHandler
+     */
+    public RejectedExecutionHandler countRejections(String policy, RejectedExecutionHandler handler) {
+        return (runnable, threadPoolExecutor) -> {
+            recordRejection(policy);
+            handler.rejectedExecution(runnable, threadPoolExecutor);
+        };
+    }
+
+    /**
+     * 记录一次拒绝。CallerRunsPolicy在提交任务的线程执行，其他策略(包括自定义的策略)视为丢弃了一个任务：
+     * AbortPolicy、DiscardPolicy丢弃当前任务，DiscardOldestPolicy丢弃最早的任务
+     *
+     * @param policy 策略名称
+     */
+    public void recordRejection(String policy) {
+        rejected.computeIfAbsent(policy, key -> new LongAdder()).increment();
+        if (!CALLER_RUNS_POLICY.equals(policy)) {
+            recordDropped();
+        }
+    }
+
+    /**
+     * 状态快照
+     *
+     * @return ExecutorSnapshot
+     */
+    public ExecutorSnapshot snapshot() {
+        Sample sample = sample();
+        Map<String, Long> rejections = new TreeMap<>();
+        rejected.forEach((policy, count) -> rejections.put(policy, count.sum()));
+
+        Executor current = executor;
+        ExecutorType type = ExecutorType.THREAD_POOL;
+        int poolSize = 0;
+        int corePoolSize = 0;
+        int maxPoolSize = 0;
+        int activeCount = 0;
+        int queueSize = 0;
+        int queueRemainingCapacity = -1;
+        if (current instanceof ThreadPoolTaskExecutor) {
+            ThreadPoolTaskExecutor threadPool = (ThreadPoolTaskExecutor) current;
+            corePoolSize = threadPool.getCorePoolSize();
+            maxPoolSize = threadPool.getMaxPoolSize();
+            poolSize = threadPool.getPoolSize();
+            activeCount = threadPool.getActiveCount();
+            ThreadPoolExecutor pool = getThreadPoolExecutor(threadPool);
+            if (pool != null) {
+                queueSize = pool.getQueue().size();
+                queueRemainingCapacity = pool.getQueue().remainingCapacity();
+            }
+        } else if (current instanceof ForkJoinTaskExecutor) {
+            type = ExecutorType.FORK_JOIN;
+            ForkJoinPool pool = ((ForkJoinTaskExecutor) current).getForkJoinPool();
+            corePoolSize = pool.getParallelism();
+            maxPoolSize = pool.getParallelism();
+            poolSize = pool.getPoolSize();
+            activeCount = pool.getActiveThreadCount();
+            queueSize = (int) Math.min(Integer.MAX_VALUE, pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount());
+        } else if (current instanceof SimpleAsyncTaskExecutor) {
+            type = ExecutorType.VIRTUAL;
+            corePoolSize = ((SimpleAsyncTaskExecutor) current).getConcurrencyLimit();
+            maxPoolSize = corePoolSize;
+            activeCount = (int) (sample.getStarted() - sample.getCompleted());
+            poolSize = activeCount;
+            // 达到并发上限时阻塞等待的任务，以及已经创建还没有开始执行的虚拟线程。
+            // 等待时被中断、创建线程失败的任务已经从提交数中减去，各个计数不是同一时刻读取，不小于0
+            queueSize = (int) Math.max(0, sample.getSubmitted() - sample.getStarted());
+        }
+
+        return new ExecutorSnapshot(name, type, poolSize, corePoolSize, maxPoolSize, activeCount, queueSize,
+            queueRemainingCapacity, sample.getSubmitted(), sample.getCompleted(), sample.getFailed(),
+            Collections.unmodifiableMap(rejections), waitTime.snapshot(), runTime.snapshot());
+    }
+
+    private static ThreadPoolExecutor getThreadPoolExecutor(ThreadPoolTaskExecutor executor) {
+        try {
+            return executor.getThreadPoolExecutor();
+        } catch (IllegalStateException e) {
+            // 还没有初始化
+            return null;
+        }
+    }
+}
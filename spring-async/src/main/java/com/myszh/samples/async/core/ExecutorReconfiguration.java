@@ -0,0 +1,50 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 运行时修改Executor的配置，为null的属性不修改
+ *
+ * @author LuoQuan
+ * @see ExecutorFactory#reconfigure
+ * @since 2022/6/30
+ */
+@Data
+public class ExecutorReconfiguration {
+
+    /**
+     * 核心线程数
+     */
+    private Integer coreSize;
+
+    /**
+     * 最大线程数
+     */
+    private Integer maxSize;
+
+    /**
+     * 线程空闲的存活时间，精确到秒
+     */
+    private Duration keepAlive;
+
+    /**
+     * 队列容量，配置为0(SynchronousQueue)的线程池不能修改
+     */
+    private Integer queueCapacity;
+
+    /**
+     * 拒绝策略：bean name或者内置策略的类名
+     */
+    private String rejectedExecutionHandler;
+
+    /**
+     * 修改原因，记录在审计日志中
+     */
+    private String reason;
+}
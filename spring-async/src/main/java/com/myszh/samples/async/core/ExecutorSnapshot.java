@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import com.myszh.samples.async.core.ExecutorFactoryProperties.ExecutorType;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Executor状态快照
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+@Value
+public class ExecutorSnapshot {
+
+    /**
+     * Executor名称
+     */
+    String name;
+
+    /**
+     * Executor类型
+     */
+    ExecutorType type;
+
+    /**
+     * 当前线程数，虚拟线程为正在执行的任务数
+     */
+    int poolSize;
+
+    /**
+     * 核心线程数，ForkJoinPool为并行度，虚拟线程为并发限制(-1不限制)
+     */
+    int corePoolSize;
+
+    /**
+     * 最大线程数，ForkJoinPool为并行度，虚拟线程为并发限制(-1不限制)
+     */
+    int maxPoolSize;
+
+    /**
+     * 正在执行任务的线程数
+     */
+    int activeCount;
+
+    /**
+     * 队列中的任务数
+     */
+    int queueSize;
+
+    /**
+     * 队列剩余容量，无法获取时为-1
+     */
+    int queueRemainingCapacity;
+
+    /**
+     * 提交的任务数
+     */
+    long submitted;
+
+    /**
+     * 执行结束的任务数
+     */
+    long completed;
+
+    /**
+     * 执行失败的任务数
+     */
+    long failed;
+
+    /**
+     * 拒绝策略 -> 拒绝的任务数
+     */
+    Map<String, Long> rejected;
+
+    /**
+     * 排队时间(提交到开始执行)
+     */
+    DurationSnapshot waitTime;
+
+    /**
+     * 执行时间(开始到结束)
+     */
+    DurationSnapshot runTime;
+}
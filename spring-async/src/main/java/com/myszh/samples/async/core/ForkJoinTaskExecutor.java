@@ -0,0 +1,233 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于ForkJoinPool的Executor：每个工作线程有自己的队列，空闲线程从其他线程的队列窃取任务，
+ * 适合大量短小的CPU密集型任务，没有ThreadPoolExecutor单个共享队列的竞争
+ * <p>
+ * ForkJoinPool的队列没有边界，这里按 "并行度 + 队列容量" 限制已提交未完成的任务数，
+ * 饱和时按拒绝策略处理：
+ * <li>AbortPolicy：抛出TaskRejectedException
+ * <li>CallerRunsPolicy：在提交任务的线程执行
+ * <li>DiscardPolicy：丢弃当前任务
+ * <li>DiscardOldestPolicy：丢弃最早提交还没有执行的任务，再提交当前任务；没有可以丢弃的任务时丢弃当前任务
+ * <p>
+ * 自定义的拒绝策略需要ThreadPoolExecutor，这里不支持，创建时抛出异常
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+public class ForkJoinTaskExecutor implements TaskExecutor, DisposableBean {
+
+    private final SaturatingForkJoinPool pool;
+
+    private final TaskDecorator taskDecorator;
+
+    private final RejectedExecutionHandler rejectedExecutionHandler;
+
+    private final int maximumTasks;
+
+    private final boolean awaitTermination;
+
+    private final Duration awaitTerminationPeriod;
+
+    /**
+     * 已提交未完成的任务数
+     */
+    private final AtomicInteger tasks = new AtomicInteger();
+
+    /**
+     * 饱和时的回调，用于统计
+     */
+    private Runnable rejectionListener;
+
+    /**
+     * @param threadNamePrefix         线程名称前缀
+     * @param daemon                   是否守护线程
+     * @param parallelism              并行度
+     * @param asyncMode                true: 队列中的任务先进先出，适合不会join的事件型任务；false: 后进先出
+     * @param queueCapacity            队列容量，已提交未完成的任务数超过 并行度 + 队列容量 时按拒绝策略处理
+     * @param taskDecorator            TaskDecorator，可以为null
+     * @param rejectedExecutionHandler 拒绝策略，只支持ThreadPoolExecutor中的4种
+     * @param awaitTermination         关闭时是否让已经提交的任务执行完成，false时中断正在执行的任务
+     * @param awaitTerminationPeriod   关闭时等待任务完成的最长时间，为null时不等待
+     * @throws IllegalArgumentException 自定义的拒绝策略
+     */
+    public ForkJoinTaskExecutor(String threadNamePrefix, boolean daemon, int parallelism, boolean asyncMode,
+                                int queueCapacity, TaskDecorator taskDecorator,
+                                RejectedExecutionHandler rejectedExecutionHandler,
+                                boolean awaitTermination, Duration awaitTerminationPeriod) {
+        if (!isSupported(rejectedExecutionHandler)) {
+            throw new IllegalArgumentException("Rejected execution handler [" + rejectedExecutionHandler
+                + "] is not supported by fork join executor");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName(threadNamePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+        this.pool = new SaturatingForkJoinPool(parallelism, threadFactory, asyncMode);
+        this.taskDecorator = taskDecorator;
+        this.rejectedExecutionHandler = rejectedExecutionHandler;
+        this.maximumTasks = (int) Math.min(Integer.MAX_VALUE, (long) parallelism + queueCapacity);
+        this.awaitTermination = awaitTermination;
+        this.awaitTerminationPeriod = awaitTerminationPeriod;
+    }
+
+    /**
+     * 是否支持的拒绝策略：ThreadPoolExecutor中的4种，自定义的策略需要ThreadPoolExecutor
+     *
+     * @param rejectedExecutionHandler 拒绝策略
+     * @return true, false
+     */
+    public static boolean isSupported(RejectedExecutionHandler rejectedExecutionHandler) {
+        return rejectedExecutionHandler instanceof ThreadPoolExecutor.AbortPolicy
+            || rejectedExecutionHandler instanceof ThreadPoolExecutor.CallerRunsPolicy
+            || rejectedExecutionHandler instanceof ThreadPoolExecutor.DiscardOldestPolicy
+            || rejectedExecutionHandler instanceof ThreadPoolExecutor.DiscardPolicy;
+    }
+
+    /**
+     * 内部的ForkJoinPool
+     *
+     * @return ForkJoinPool
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return pool;
+    }
+
+    /**
+     * 设置饱和时的回调，按拒绝策略处理之前调用
+     *
+     * @param rejectionListener 回调，可以为null
+     */
+    public void setRejectionListener(Runnable rejectionListener) {
+        this.rejectionListener = rejectionListener;
+    }
+
+    /**
+     * 已提交未完成的任务数
+     *
+     * @return 任务数
+     */
+    public int getTaskCount() {
+        return tasks.get();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (pool.isShutdown()) {
+            throw new TaskRejectedException("Executor [" + pool + "] has been shut down");
+        }
+        Runnable decorated = taskDecorator == null ? task : taskDecorator.decorate(task);
+        if (tasks.incrementAndGet() > maximumTasks) {
+            tasks.decrementAndGet();
+            saturated(decorated);
+            return;
+        }
+        submit(decorated);
+    }
+
+    private void submit(Runnable task) {
+        try {
+            pool.execute(new CountedTask(task));
+        } catch (RejectedExecutionException e) {
+            tasks.decrementAndGet();
+            throw new TaskRejectedException("Executor [" + pool + "] did not accept task: " + task, e);
+        }
+    }
+
+    /**
+     * 饱和时按拒绝策略处理
+     *
+     * @param task 已经装饰的任务
+     */
+    private void saturated(Runnable task) {
+        if (rejectionListener != null) {
+            rejectionListener.run();
+        }
+        if (rejectedExecutionHandler instanceof ThreadPoolExecutor.CallerRunsPolicy) {
+            task.run();
+        } else if (rejectedExecutionHandler instanceof ThreadPoolExecutor.DiscardOldestPolicy) {
+            // 丢弃的任务的计数留给当前任务；所有任务都已经开始执行时没有可以丢弃的，
+            // 当前任务就是最早的还没有执行的任务，丢弃当前任务
+            if (pool.pollOldestSubmission() != null) {
+                submit(task);
+            }
+        } else if (rejectedExecutionHandler instanceof ThreadPoolExecutor.AbortPolicy) {
+            throw new TaskRejectedException("Executor [" + pool + "] is saturated, tasks: " + tasks.get());
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (!awaitTermination) {
+            pool.shutdownNow();
+            return;
+        }
+        pool.shutdown();
+        if (awaitTerminationPeriod != null) {
+            pool.awaitTermination(awaitTerminationPeriod.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pool.toString();
+    }
+
+    /**
+     * 执行结束后减少任务数
+     */
+    private final class CountedTask implements Runnable {
+
+        private final Runnable task;
+
+        CountedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                tasks.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 可以移除最早提交的任务的ForkJoinPool
+     */
+    private static final class SaturatingForkJoinPool extends ForkJoinPool {
+
+        SaturatingForkJoinPool(int parallelism, ForkJoinWorkerThreadFactory factory, boolean asyncMode) {
+            super(parallelism, factory, null, asyncMode);
+        }
+
+        ForkJoinTask<?> pollOldestSubmission() {
+            return pollSubmission();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * 自动调整线程数的一次决策
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+@Value
+public class PoolSizingDecision {
+
+    /**
+     * Executor名称
+     */
+    String executor;
+
+    /**
+     * 决策时间
+     */
+    Instant time;
+
+    /**
+     * 调整前的核心线程数
+     */
+    int previousSize;
+
+    /**
+     * 调整后的核心线程数，与previousSize相同表示不调整
+     */
+    int newSize;
+
+    /**
+     * 每秒提交的任务数
+     */
+    double arrivalRate;
+
+    /**
+     * 每秒完成的任务数
+     */
+    double throughput;
+
+    /**
+     * 平均排队时间(毫秒)
+     */
+    double averageWaitMillis;
+
+    /**
+     * 平均执行时间(毫秒)
+     */
+    double averageRunMillis;
+
+    /**
+     * 利用率：平均忙碌线程数 / 线程数
+     */
+    double utilization;
+
+    /**
+     * 队列中的任务数
+     */
+    int queueSize;
+
+    /**
+     * 决策原因
+     */
+    String reason;
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 可以在运行时修改容量的阻塞队列
+ * <p>
+ * 容量缩小到小于当前元素数时不会丢弃已经入队的元素，只是在元素数降到容量以下之前拒绝新的元素。
+ * 入队的检查和插入在同一把锁内完成，出队不加锁，只有存在等待入队的线程时才唤醒
+ *
+ * @author LuoQuan
+ * @since 2022/6/30
+ */
+public class ResizableBlockingQueue<E> extends LinkedBlockingQueue<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ReentrantLock putLock = new ReentrantLock();
+
+    private final Condition notFull = putLock.newCondition();
+
+    private volatile int capacity;
+
+    /**
+     * 等待入队的线程数
+     */
+    private volatile int waiting;
+
+    public ResizableBlockingQueue(int capacity) {
+        this.capacity = checkCapacity(capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 修改容量
+     *
+     * @param capacity 容量，必须大于0
+     */
+    public void setCapacity(int capacity) {
+        checkCapacity(capacity);
+        putLock.lock();
+        try {
+            this.capacity = capacity;
+            notFull.signalAll();
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    private static int checkCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be greater than 0: " + capacity);
+        }
+        return capacity;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        putLock.lock();
+        try {
+            return size() < capacity && super.offer(e);
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        Objects.requireNonNull(e);
+        long nanos = unit.toNanos(timeout);
+        putLock.lockInterruptibly();
+        waiting++;
+        try {
+            while (size() >= capacity) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return super.offer(e);
+        } finally {
+            waiting--;
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        Objects.requireNonNull(e);
+        putLock.lockInterruptibly();
+        waiting++;
+        try {
+            while (size() >= capacity) {
+                notFull.await();
+            }
+            super.offer(e);
+        } finally {
+            waiting--;
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e = super.take();
+        signalNotFull(false);
+        return e;
+    }
+
+    @Override
+    public E poll() {
+        E e = super.poll();
+        if (e != null) {
+            signalNotFull(false);
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = super.poll(timeout, unit);
+        if (e != null) {
+            signalNotFull(false);
+        }
+        return e;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        boolean removed = super.remove(o);
+        if (removed) {
+            signalNotFull(false);
+        }
+        return removed;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int drained = super.drainTo(c, maxElements);
+        if (drained > 0) {
+            signalNotFull(true);
+        }
+        return drained;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        signalNotFull(true);
+    }
+
+    /**
+     * 出队后唤醒等待入队的线程。等待的线程在检查元素数之前已经计数，这里读到0时它一定能看到这次出队
+     *
+     * @param all 是否唤醒所有等待的线程
+     */
+    private void signalNotFull(boolean all) {
+        if (waiting == 0) {
+            return;
+        }
+        putLock.lock();
+        try {
+            if (all) {
+                notFull.signalAll();
+            } else {
+                notFull.signal();
+            }
+        } finally {
+            putLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 运行时可以修改队列容量、拒绝策略的线程池，可以读取TaskDecorator。
+ * 线程数、存活时间ThreadPoolTaskExecutor本身已经支持在初始化之后修改
+ * <p>
+ * 队列容量大于0时使用{@link ResizableBlockingQueue}，等于0时与ThreadPoolTaskExecutor一样使用SynchronousQueue，不能修改容量
+ *
+ * @author LuoQuan
+ * @since 2022/6/30
+ */
+public class ResizableThreadPoolTaskExecutor extends ThreadPoolTaskExecutor {
+
+    private static final long serialVersionUID = 1L;
+
+    private volatile int queueCapacity = Integer.MAX_VALUE;
+
+    private volatile RejectedExecutionHandler rejectedExecutionHandler = new ThreadPoolExecutor.AbortPolicy();
+
+    private TaskDecorator taskDecorator;
+
+    @Override
+    protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+        if (queueCapacity > 0) {
+            return new ResizableBlockingQueue<>(queueCapacity);
+        }
+        return new SynchronousQueue<>();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * 设置队列容量，初始化之后修改时已经入队的任务保留
+     *
+     * @param queueCapacity 队列容量
+     * @throws IllegalStateException 初始化时容量为0，使用的是SynchronousQueue
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setQueueCapacity(int queueCapacity) {
+        ThreadPoolExecutor pool = getInitializedExecutor();
+        if (pool != null) {
+            if (!(pool.getQueue() instanceof ResizableBlockingQueue)) {
+                throw new IllegalStateException("Queue capacity of [" + getThreadNamePrefix()
+                    + "] was 0 (SynchronousQueue) and cannot be changed");
+            }
+            ((ResizableBlockingQueue<Runnable>) pool.getQueue()).setCapacity(queueCapacity);
+        }
+        super.setQueueCapacity(queueCapacity);
+        this.queueCapacity = queueCapacity;
+    }
+
+    public RejectedExecutionHandler getRejectedExecutionHandler() {
+        return rejectedExecutionHandler;
+    }
+
+    /**
+     * 设置拒绝策略，初始化之后修改时立即生效
+     *
+     * @param rejectedExecutionHandler 拒绝策略，null为AbortPolicy
+     */
+    @Override
+    public void setRejectedExecutionHandler(RejectedExecutionHandler rejectedExecutionHandler) {
+        RejectedExecutionHandler handler = rejectedExecutionHandler != null
+            ? rejectedExecutionHandler
+            : new ThreadPoolExecutor.AbortPolicy();
+        super.setRejectedExecutionHandler(handler);
+        this.rejectedExecutionHandler = handler;
+        ThreadPoolExecutor pool = getInitializedExecutor();
+        if (pool != null) {
+            pool.setRejectedExecutionHandler(handler);
+        }
+    }
+
+    /**
+     * ThreadPoolTaskExecutor没有提供读取TaskDecorator的方法，这里保留一份
+     *
+     * @return 没有设置时为null
+     */
+    public TaskDecorator getTaskDecorator() {
+        return taskDecorator;
+    }
+
+    @Override
+    public void setTaskDecorator(TaskDecorator taskDecorator) {
+        super.setTaskDecorator(taskDecorator);
+        this.taskDecorator = taskDecorator;
+    }
+
+    /**
+     * @return 还没有初始化时为null
+     */
+    private ThreadPoolExecutor getInitializedExecutor() {
+        try {
+            return getThreadPoolExecutor();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import lombok.Value;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录任务排队时间(提交到开始)、执行时间(开始到结束)的TaskDecorator，
+ * 先执行原有的TaskDecorator，原有的上下文传递不受影响
+ * <p>
+ * ThreadPoolTaskExecutor在提交任务的线程调用decorate，所以decorate的时间就是提交时间。
+ * decorate时计入提交数，之后被拒绝策略丢弃或者提交失败的任务通过{@link #recordDropped()}减去，
+ * 提交数只包括会执行的任务
+ * <p>
+ * 默认只使用LongAdder计数，任务开始、结束不加锁。包括正在执行的任务的忙碌时间需要一致地读取多个值，
+ * 只在自动调整线程数的线程池上通过{@link #trackBusyTime()}开启
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+public class TaskTimer implements TaskDecorator {
+
+    private final TaskDecorator delegate;
+
+    private final LongAdder submitted = new LongAdder();
+
+    private final LongAdder started = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * 执行结束的任务的执行时间合计，统计忙碌时间时在runLock内修改
+     */
+    private final LongAdder runNanos = new LongAdder();
+
+    /**
+     * 忙碌时间相关的值快照时需要一致(正在执行的任务数与开始时间合计不一致时误差是整个System.nanoTime())，
+     * 统计忙碌时间时一起加锁修改，每个任务开始、结束各一次
+     */
+    private final Object runLock = new Object();
+
+    /**
+     * 是否统计正在执行的任务的忙碌时间
+     */
+    private volatile boolean busyTracked;
+
+    /**
+     * 正在执行的任务数
+     */
+    private int running;
+
+    /**
+     * 正在执行的任务的开始时间合计
+     */
+    private long runningStartNanos;
+
+    /**
+     * @param delegate 原有的TaskDecorator，可以为null
+     */
+    public TaskTimer(TaskDecorator delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * DiscardOldestPolicy重新提交时ThreadPoolTaskExecutor会再次decorate，已经decorate过的任务原样返回，不重复计数
+     */
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        if (runnable instanceof TimedTask && ((TimedTask) runnable).timer() == this) {
+            return runnable;
+        }
+        Runnable decorated = delegate == null ? runnable : delegate.decorate(runnable);
+        submitted.increment();
+        return new TimedTask(decorated, System.nanoTime());
+    }
+
+    /**
+     * 开启后{@link Sample#getBusyNanos()}包括正在执行的任务已经执行的时间，每个任务开始、结束时各加锁一次。
+     * 应该在提交任务之前开启，开启之前已经开始的任务结束之后才计入
+     */
+    void trackBusyTime() {
+        busyTracked = true;
+    }
+
+    /**
+     * 已经decorate的任务不会执行(被拒绝策略丢弃、提交失败)，从提交数中减去
+     */
+    public void recordDropped() {
+        submitted.decrement();
+    }
+
+    /**
+     * 任务执行结束，子类可以记录更详细的耗时分布
+     *
+     * @param submitNanos 提交时间
+     * @param startNanos  开始时间
+     * @param endNanos    结束时间
+     * @param success     是否成功
+     */
+    protected void afterExecute(long submitNanos, long startNanos, long endNanos, boolean success) {
+    }
+
+    /**
+     * 累计值的快照，两次快照相减得到一段时间内的值
+     *
+     * @return Sample
+     */
+    public Sample sample() {
+        long nanoTime;
+        long completedRunNanos;
+        long busyNanos;
+        synchronized (runLock) {
+            nanoTime = System.nanoTime();
+            completedRunNanos = runNanos.sum();
+            // 加上正在执行的任务从开始到现在的时间，中间结果溢出不影响结果；没有开启统计时没有正在执行的任务
+            busyNanos = completedRunNanos + running * nanoTime - runningStartNanos;
+        }
+        return new Sample(nanoTime, submitted.sum(), started.sum(), completed.sum(), failed.sum(),
+            waitNanos.sum(), completedRunNanos, busyNanos);
+    }
+
+    /**
+     * 记录排队时间、执行时间的任务
+     */
+    private final class TimedTask implements Runnable {
+
+        private final Runnable task;
+
+        private final long submitNanos;
+
+        TimedTask(Runnable task, long submitNanos) {
+            this.task = task;
+            this.submitNanos = submitNanos;
+        }
+
+        TaskTimer timer() {
+            return TaskTimer.this;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            started.increment();
+            waitNanos.add(startNanos - submitNanos);
+            // 开始、结束使用同一个值，中途开启统计不会只减不加
+            boolean tracked = busyTracked;
+            if (tracked) {
+                synchronized (runLock) {
+                    running++;
+                    runningStartNanos += startNanos;
+                }
+            }
+            boolean success = false;
+            try {
+                task.run();
+                success = true;
+            } finally {
+                long endNanos = System.nanoTime();
+                if (tracked) {
+                    synchronized (runLock) {
+                        running--;
+                        runningStartNanos -= startNanos;
+                        runNanos.add(endNanos - startNanos);
+                    }
+                } else {
+                    runNanos.add(endNanos - startNanos);
+                }
+                completed.increment();
+                if (!success) {
+                    failed.increment();
+                }
+                afterExecute(submitNanos, startNanos, endNanos, success);
+            }
+        }
+    }
+
+    /**
+     * 累计值
+     */
+    @Value
+    public static class Sample {
+
+        /**
+         * 快照时间
+         */
+        long nanoTime;
+
+        /**
+         * 提交并且会执行的任务数，不包括被丢弃的任务
+         */
+        long submitted;
+
+        /**
+         * 开始执行的任务数
+         */
+        long started;
+
+        /**
+         * 执行结束的任务数
+         */
+        long completed;
+
+        /**
+         * 执行失败的任务数
+         */
+        long failed;
+
+        /**
+         * 排队时间合计
+         */
+        long waitNanos;
+
+        /**
+         * 执行结束的任务的执行时间合计
+         */
+        long runNanos;
+
+        /**
+         * 忙碌时间合计：执行结束的任务的执行时间，加上正在执行的任务到快照时间为止已经执行的时间。
+         * 两次快照相减就是这段时间内所有线程的忙碌时间，长任务不会等到结束才计入。
+         * 没有开启{@link TaskTimer#trackBusyTime()}时与runNanos相同
+         */
+        long busyNanos;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程支持，项目按Java 8编译，通过反射使用Java 21的Thread.ofVirtual()
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+
+    private static final Method NAME;
+
+    private static final Method FACTORY;
+
+    private static final boolean SUPPORTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            // Java 19以下没有虚拟线程
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        SUPPORTED = ofVirtual != null && probe();
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 实际创建一个(不启动的)虚拟线程。Java 19、20中虚拟线程是预览特性，
+     * 方法存在但没有开启--enable-preview时调用抛出UnsupportedOperationException
+     *
+     * @return 能创建时返回true
+     */
+    private static boolean probe() {
+        try {
+            newThreadFactory("virtual-probe-").newThread(() -> {
+            });
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 当前运行环境是否支持虚拟线程
+     *
+     * @return true, false
+     */
+    static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * 创建虚拟线程的ThreadFactory，线程名称为 前缀+序号
+     *
+     * @param threadNamePrefix 线程名称前缀
+     * @return ThreadFactory
+     */
+    static ThreadFactory threadFactory(String threadNamePrefix) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later");
+        }
+        return newThreadFactory(threadNamePrefix);
+    }
+
+    private static ThreadFactory newThreadFactory(String threadNamePrefix) {
+        Object builder = ReflectionUtils.invokeMethod(OF_VIRTUAL, null);
+        builder = ReflectionUtils.invokeMethod(NAME, builder, threadNamePrefix, 0L);
+        return (ThreadFactory) ReflectionUtils.invokeMethod(FACTORY, builder);
+    }
+}
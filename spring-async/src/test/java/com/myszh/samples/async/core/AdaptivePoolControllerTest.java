@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import com.myszh.samples.async.core.ExecutorFactoryProperties.Adaptive;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+class AdaptivePoolControllerTest {
+
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 间隔1秒，目标排队时间100ms，利用率下限0.5，预留20%，线程数[2, 50]。
+     * 每一行：当前核心线程数、最大线程数、当前队列长度、间隔开始时队列长度、
+     * 间隔内提交数、开始数、完成数、排队时间合计(ms)、完成的任务执行时间合计(ms)、忙碌时间合计(ms)、期望的核心线程数
+     */
+    private static final Object[][] CASES = {
+        // 排队超过目标：按利特尔法则(100/s * 100ms * 1.2 = 12)增加，最多翻倍
+        {"grow", 4, 50, 100, 50, 100, 40, 40, 20000, 4000, 4000, 8},
+        // 不超过线程池的最大线程数
+        {"grow clamped to pool max", 4, 6, 100, 50, 100, 40, 40, 20000, 4000, 4000, 6},
+        // 不超过adaptive.max-size
+        {"grow clamped to adaptive max", 40, 100, 100, 50, 1000, 400, 400, 200000, 40000, 40000, 50},
+        // 利特尔法则需要的线程数更少时至少加1
+        {"grow at least one", 4, 50, 100, 50, 10, 10, 10, 5000, 100, 100, 5},
+        // 没有任务开始，排队时间按整个间隔计算
+        {"grow when all threads blocked", 10, 50, 20, 10, 20, 0, 0, 0, 0, 10000, 11},
+        // 线程数已经足够并且队列在减少：不调整
+        {"hysteresis while backlog draining", 20, 50, 50, 100, 100, 100, 100, 50000, 10000, 20000, 20},
+        // 队列不再减少时继续增加
+        {"grow when backlog not draining", 20, 50, 100, 50, 100, 100, 100, 50000, 10000, 20000, 21},
+        // 利用率低并且队列为空：每次最多减少1/4
+        {"shrink", 20, 50, 0, 0, 10, 10, 10, 10, 1000, 1000, 15},
+        // 不低于adaptive.min-size
+        {"shrink clamped to min", 2, 50, 0, 0, 1, 1, 1, 1, 10, 10, 2},
+        // 长任务正在执行，没有任务完成，忙碌时间仍然计入利用率：不减少
+        {"keep while long tasks running", 10, 50, 0, 0, 0, 0, 0, 0, 0, 10000, 10},
+        {"within target", 10, 50, 5, 5, 50, 50, 50, 500, 5000, 7000, 10},
+        // 运行时最大线程数被改小
+        {"clamped to lowered pool max", 20, 10, 5, 5, 50, 50, 50, 500, 5000, 7000, 10},
+    };
+
+    /**
+     * 表驱动：增加、减少、上下限、滞后
+     */
+    @Test
+    void should_decide_pool_size() {
+        Adaptive adaptive = new Adaptive();
+        adaptive.setMinSize(2);
+        adaptive.setMaxSize(50);
+
+        TaskTimer.Sample last = new TaskTimer.Sample(0, 0, 0, 0, 0, 0, 0, 0);
+        for (Object[] row : CASES) {
+            TaskTimer.Sample current = new TaskTimer.Sample(INTERVAL_NANOS, (int) row[5], (int) row[6], (int) row[7],
+                0, millis(row[8]), millis(row[9]), millis(row[10]));
+            PoolSizingDecision decision = AdaptivePoolController.decide("test", adaptive, (int) row[1],
+                (int) row[2], last, current, (int) row[3], (int) row[4]);
+
+            assertEquals((int) row[11], decision.getNewSize(), () -> row[0] + ": " + decision.getReason());
+            assertEquals((int) row[1], decision.getPreviousSize(), (String) row[0]);
+        }
+    }
+
+    private static long millis(Object value) {
+        return TimeUnit.MILLISECONDS.toNanos((int) value);
+    }
+}
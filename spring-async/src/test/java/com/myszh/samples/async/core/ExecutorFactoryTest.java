@@ -0,0 +1,257 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import com.myszh.samples.async.core.ExecutorFactoryProperties.ExecutorBeanDefinition;
+import com.myszh.samples.async.core.ExecutorFactoryProperties.ExecutorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+class ExecutorFactoryTest {
+
+    private GenericApplicationContext applicationContext;
+
+    private ExecutorFactory executorFactory;
+
+    private final List<ResizableThreadPoolTaskExecutor> executors = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        applicationContext = new GenericApplicationContext();
+        applicationContext.refresh();
+        executorFactory = new ExecutorFactory();
+        executorFactory.setApplicationContext(applicationContext);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executors.forEach(ResizableThreadPoolTaskExecutor::shutdown);
+        executorFactory.destroy();
+        applicationContext.close();
+    }
+
+    /**
+     * 虚拟线程的并发上限只能是-1(不限制)或者正数，0和其他负数在创建Supplier时就失败
+     */
+    @Test
+    void should_validate_concurrency_limit() {
+        for (int concurrencyLimit : new int[]{0, -2}) {
+            ExecutorBeanDefinition definition = definition("virtual", ExecutorType.VIRTUAL);
+            definition.setConcurrencyLimit(concurrencyLimit);
+            Assertions.assertThrows(IllegalArgumentException.class,
+                () -> executorFactory.executorInstanceSupplier(definition));
+        }
+
+        for (int concurrencyLimit : new int[]{-1, 10}) {
+            ExecutorBeanDefinition definition = definition("virtual", ExecutorType.VIRTUAL);
+            definition.setConcurrencyLimit(concurrencyLimit);
+            Executor executor = executorFactory.<Executor>executorInstanceSupplier(definition).get();
+            if (VirtualThreads.isSupported()) {
+                Assertions.assertEquals(concurrencyLimit,
+                    ((SimpleAsyncTaskExecutor) executor).getConcurrencyLimit());
+            } else {
+                // 不支持虚拟线程时退回到线程池
+                ((ResizableThreadPoolTaskExecutor) executor).shutdown();
+            }
+        }
+    }
+
+    /**
+     * ForkJoinPool只支持内置的拒绝策略，自定义的在创建Supplier时就失败
+     */
+    @Test
+    void should_reject_custom_handler_of_fork_join() {
+        ExecutorBeanDefinition definition = definition("fork-join", ExecutorType.FORK_JOIN);
+        definition.setRejectedExecutionHandler("customRejectedExecutionHandler");
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> executorFactory.executorInstanceSupplier(definition));
+
+        definition.setRejectedExecutionHandler("CallerRunsPolicy");
+        Executor executor = executorFactory.<Executor>executorInstanceSupplier(definition).get();
+        Assertions.assertTrue(executor instanceof ForkJoinTaskExecutor);
+        ((ForkJoinTaskExecutor) executor).getForkJoinPool().shutdownNow();
+    }
+
+    /**
+     * 自动调整的最小线程数不能超过线程池的最大线程数
+     */
+    @Test
+    void should_validate_adaptive_min_size() {
+        ExecutorBeanDefinition definition = definition("adaptive", ExecutorType.THREAD_POOL);
+        definition.getPool().setMaxSize(4);
+        definition.getAdaptive().setEnabled(true);
+        definition.getAdaptive().setMinSize(5);
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> executorFactory.executorInstanceSupplier(definition));
+
+        definition.getAdaptive().setMinSize(0);
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> executorFactory.executorInstanceSupplier(definition));
+
+        definition.getAdaptive().setMinSize(2);
+        Executor executor = executorFactory.<Executor>executorInstanceSupplier(definition).get();
+        ((ResizableThreadPoolTaskExecutor) executor).shutdown();
+    }
+
+    /**
+     * 任何一项配置不合法时都不修改，不是线程池或者使用SynchronousQueue时不支持修改
+     */
+    @Test
+    void should_validate_reconfiguration() {
+        ResizableThreadPoolTaskExecutor executor = threadPool("pool", 2, 4, 10);
+        ExecutorReconfiguration invalidKeepAlive = reconfiguration(null, null, 20);
+        invalidKeepAlive.setKeepAlive(Duration.ofSeconds(-1));
+        // 不是整秒或者超出int范围时不能截断
+        ExecutorReconfiguration fractionalKeepAlive = reconfiguration(null, null, 20);
+        fractionalKeepAlive.setKeepAlive(Duration.ofMillis(500));
+        ExecutorReconfiguration hugeKeepAlive = reconfiguration(null, null, 20);
+        hugeKeepAlive.setKeepAlive(Duration.ofSeconds(Integer.MAX_VALUE + 1L));
+        ExecutorReconfiguration unknownPolicy = reconfiguration(null, null, 20);
+        unknownPolicy.setRejectedExecutionHandler("customRejectedExecutionHandler");
+        // 其他属性合法，也不能部分生效
+        List<ExecutorReconfiguration> invalids = Arrays.asList(
+            reconfiguration(5, null, 20), reconfiguration(null, 0, 20), reconfiguration(-1, null, 20),
+            reconfiguration(3, 3, 0), invalidKeepAlive, fractionalKeepAlive, hugeKeepAlive, unknownPolicy);
+        for (ExecutorReconfiguration invalid : invalids) {
+            Assertions.assertThrows(IllegalArgumentException.class,
+                () -> executorFactory.reconfigure("pool", invalid, "tester"), invalid::toString);
+        }
+        assertEquals(2, executor.getCorePoolSize());
+        assertEquals(4, executor.getMaxPoolSize());
+        assertEquals(10, executor.getQueueCapacity());
+        Assertions.assertTrue(executorFactory.getExecutorChanges().isEmpty());
+
+        Assertions.assertFalse(executorFactory.reconfigure("absent", reconfiguration(1, 1, null), "tester")
+            .isPresent());
+
+        threadPool("synchronous", 1, 2, 0);
+        Assertions.assertThrows(UnsupportedOperationException.class,
+            () -> executorFactory.reconfigure("synchronous", reconfiguration(null, null, 10), "tester"));
+
+        ExecutorBeanDefinition definition = definition("fork-join", ExecutorType.FORK_JOIN);
+        Executor forkJoin = executorFactory.<Executor>executorInstanceSupplier(definition).get();
+        Assertions.assertThrows(UnsupportedOperationException.class,
+            () -> executorFactory.reconfigure("fork-join", reconfiguration(1, 1, null), "tester"));
+        ((ForkJoinTaskExecutor) forkJoin).getForkJoinPool().shutdownNow();
+    }
+
+    /**
+     * 核心线程数改到大于原来的最大线程数、最大线程数改到小于原来的核心线程数都按合适的顺序生效
+     */
+    @Test
+    void should_reconfigure_pool_size_in_either_direction() {
+        ResizableThreadPoolTaskExecutor executor = threadPool("pool", 2, 4, 10);
+
+        executorFactory.reconfigure("pool", reconfiguration(6, 8, null), "tester");
+        assertEquals(6, executor.getCorePoolSize());
+        assertEquals(8, executor.getMaxPoolSize());
+        assertEquals(6, executor.getThreadPoolExecutor().getCorePoolSize());
+
+        executorFactory.reconfigure("pool", reconfiguration(1, 3, null), "tester");
+        assertEquals(1, executor.getCorePoolSize());
+        assertEquals(3, executor.getMaxPoolSize());
+
+        executorFactory.reconfigure("pool", reconfiguration(3, null, null), "tester");
+        assertEquals(3, executor.getCorePoolSize());
+        assertEquals(3, executor.getMaxPoolSize());
+    }
+
+    /**
+     * 自动调整增大了核心线程数后只改小最大线程数，核心线程数随之减小
+     */
+    @Test
+    void should_lower_adaptive_core_size_with_max_size() {
+        ResizableThreadPoolTaskExecutor executor = threadPool("pool", 2, 10, 10);
+        // 与AdaptivePoolController增大核心线程数的方式相同
+        executor.setCorePoolSize(8);
+
+        List<ExecutorChange> changes = executorFactory.reconfigure("pool", reconfiguration(null, 4, null), "tester")
+            .orElseThrow(IllegalStateException::new);
+        assertEquals(4, executor.getCorePoolSize());
+        assertEquals(4, executor.getMaxPoolSize());
+        assertEquals(Arrays.asList("core-size 8 -> 4", "max-size 10 -> 4"), describe(changes));
+    }
+
+    /**
+     * 只记录有变化的属性，包含操作人和原因，可以按Executor查询
+     */
+    @Test
+    void should_audit_changed_properties() {
+        threadPool("pool", 2, 4, 10);
+        threadPool("other", 2, 4, 10);
+
+        ExecutorReconfiguration configuration = reconfiguration(2, 6, 20);
+        configuration.setKeepAlive(Duration.ofSeconds(60));
+        configuration.setRejectedExecutionHandler("CallerRunsPolicy");
+        configuration.setReason("peak traffic");
+        List<ExecutorChange> changes = executorFactory.reconfigure("pool", configuration, "tester")
+            .orElseThrow(IllegalStateException::new);
+        assertEquals(Arrays.asList("max-size 4 -> 6", "queue-capacity 10 -> 20",
+            "rejected-execution-handler AbortPolicy -> CallerRunsPolicy"), describe(changes));
+        for (ExecutorChange change : changes) {
+            assertEquals("pool", change.getExecutor());
+            assertEquals("tester", change.getOperator());
+            assertEquals("peak traffic", change.getReason());
+        }
+
+        executorFactory.reconfigure("other", reconfiguration(1, null, null), "another");
+        assertEquals(changes, executorFactory.getExecutorChanges("pool"));
+        assertEquals(4, executorFactory.getExecutorChanges().size());
+        assertEquals("another", executorFactory.getExecutorChanges("other").get(0).getOperator());
+    }
+
+    private ResizableThreadPoolTaskExecutor threadPool(String name, int coreSize, int maxSize, int queueCapacity) {
+        ExecutorBeanDefinition definition = definition(name, ExecutorType.THREAD_POOL);
+        definition.getPool().setCoreSize(coreSize);
+        definition.getPool().setMaxSize(maxSize);
+        definition.getPool().setQueueCapacity(queueCapacity);
+        definition.getPool().setKeepAlive(Duration.ofSeconds(60));
+        ResizableThreadPoolTaskExecutor executor =
+            executorFactory.<ResizableThreadPoolTaskExecutor>executorInstanceSupplier(definition).get();
+        // 作为bean时由容器初始化
+        executor.initialize();
+        executors.add(executor);
+        return executor;
+    }
+
+    private static ExecutorReconfiguration reconfiguration(Integer coreSize, Integer maxSize, Integer queueCapacity) {
+        ExecutorReconfiguration configuration = new ExecutorReconfiguration();
+        configuration.setCoreSize(coreSize);
+        configuration.setMaxSize(maxSize);
+        configuration.setQueueCapacity(queueCapacity);
+        return configuration;
+    }
+
+    private static List<String> describe(List<ExecutorChange> changes) {
+        return changes.stream()
+            .map(change -> change.getProperty() + " " + change.getPreviousValue() + " -> " + change.getNewValue())
+            .collect(Collectors.toList());
+    }
+
+    static ExecutorBeanDefinition definition(String name, ExecutorType type) {
+        ExecutorBeanDefinition definition = new ExecutorBeanDefinition();
+        definition.setName(name);
+        definition.setThreadNamePrefix(name + "-");
+        definition.setType(type);
+        return definition;
+    }
+}
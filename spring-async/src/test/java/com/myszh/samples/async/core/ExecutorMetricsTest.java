@@ -0,0 +1,199 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import com.myszh.samples.async.core.ExecutorFactoryProperties.ExecutorBeanDefinition;
+import com.myszh.samples.async.core.ExecutorFactoryProperties.ExecutorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 一个线程、队列容量1的线程池，第一个任务阻塞线程，第二个任务排队，第三个任务被拒绝
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+class ExecutorMetricsTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AtomicInteger decorated = new AtomicInteger();
+
+    private GenericApplicationContext applicationContext;
+
+    private ExecutorFactory executorFactory;
+
+    private Executor executor;
+
+    @BeforeEach
+    void setUp() {
+        applicationContext = new GenericApplicationContext();
+        applicationContext.registerBean(TaskDecorator.class, () -> runnable -> {
+            decorated.incrementAndGet();
+            return runnable;
+        });
+        applicationContext.refresh();
+        executorFactory = new ExecutorFactory();
+        executorFactory.setApplicationContext(applicationContext);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        if (executor instanceof ResizableThreadPoolTaskExecutor) {
+            ((ResizableThreadPoolTaskExecutor) executor).shutdown();
+        } else if (executor instanceof ForkJoinTaskExecutor) {
+            ((ForkJoinTaskExecutor) executor).destroy();
+        }
+        executorFactory.destroy();
+        applicationContext.close();
+    }
+
+    /**
+     * AbortPolicy丢弃的任务不计入提交数
+     */
+    @Test
+    void should_not_count_aborted_task_as_submitted() throws InterruptedException {
+        saturate("AbortPolicy", ExecutorType.THREAD_POOL);
+        Assertions.assertThrows(TaskRejectedException.class, () -> executor.execute(() -> {
+        }));
+
+        ExecutorSnapshot snapshot = snapshot();
+        assertEquals(2, snapshot.getSubmitted());
+        assertEquals(1, snapshot.getQueueSize());
+        assertEquals(Collections.singletonMap("AbortPolicy", 1L), snapshot.getRejected());
+        // 原有的TaskDecorator仍然生效
+        assertEquals(3, decorated.get());
+    }
+
+    /**
+     * CallerRunsPolicy在提交任务的线程执行，计入提交数
+     */
+    @Test
+    void should_count_caller_runs_task_as_submitted() throws InterruptedException {
+        saturate("CallerRunsPolicy", ExecutorType.THREAD_POOL);
+        executor.execute(() -> {
+        });
+
+        ExecutorSnapshot snapshot = snapshot();
+        assertEquals(3, snapshot.getSubmitted());
+        assertEquals(1, snapshot.getCompleted());
+        assertEquals(Collections.singletonMap("CallerRunsPolicy", 1L), snapshot.getRejected());
+    }
+
+    /**
+     * DiscardOldestPolicy丢弃了排队的任务，提交数减1
+     */
+    @Test
+    void should_not_count_discarded_oldest_task_as_submitted() throws InterruptedException {
+        saturate("DiscardOldestPolicy", ExecutorType.THREAD_POOL);
+        executor.execute(() -> {
+        });
+
+        assertEquals(2, snapshot().getSubmitted());
+        release.countDown();
+        await(() -> snapshot().getCompleted() == 2);
+        assertEquals(2, snapshot().getSubmitted());
+    }
+
+    /**
+     * ForkJoinPool饱和时同样按策略统计
+     */
+    @Test
+    void should_not_count_discarded_fork_join_task_as_submitted() throws InterruptedException {
+        saturate("DiscardPolicy", ExecutorType.FORK_JOIN);
+        executor.execute(() -> {
+        });
+
+        ExecutorSnapshot snapshot = snapshot();
+        assertEquals(2, snapshot.getSubmitted());
+        assertEquals(Collections.singletonMap("DiscardPolicy", 1L), snapshot.getRejected());
+        assertEquals(3, decorated.get());
+    }
+
+    /**
+     * 虚拟线程达到并发上限时提交线程阻塞，计入队列；阻塞时被中断的任务不会执行，不计入提交数
+     */
+    @Test
+    void should_count_throttled_virtual_tasks_as_queued() throws InterruptedException {
+        Assumptions.assumeTrue(VirtualThreads.isSupported(), "virtual threads are not supported");
+        ExecutorBeanDefinition definition = ExecutorFactoryTest.definition("metrics", ExecutorType.VIRTUAL);
+        definition.setConcurrencyLimit(1);
+        executor = executorFactory.<Executor>executorInstanceSupplier(definition).get();
+        executor.execute(this::block);
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        Thread submitter = new Thread(() -> executor.execute(() -> {
+        }));
+        submitter.start();
+        await(() -> snapshot().getQueueSize() == 1);
+        assertEquals(1, snapshot().getActiveCount());
+
+        submitter.interrupt();
+        submitter.join();
+        ExecutorSnapshot snapshot = snapshot();
+        assertEquals(0, snapshot.getQueueSize());
+        assertEquals(1, snapshot.getSubmitted());
+    }
+
+    /**
+     * 一个正在执行的任务，一个排队的任务
+     */
+    private void saturate(String policy, ExecutorType type) throws InterruptedException {
+        ExecutorBeanDefinition definition = ExecutorFactoryTest.definition("metrics", type);
+        definition.setRejectedExecutionHandler(policy);
+        definition.setParallelism(1);
+        definition.getPool().setCoreSize(1);
+        definition.getPool().setMaxSize(1);
+        definition.getPool().setQueueCapacity(1);
+        executor = executorFactory.<Executor>executorInstanceSupplier(definition).get();
+        if (executor instanceof ResizableThreadPoolTaskExecutor) {
+            // 作为bean时由容器初始化
+            ((ResizableThreadPoolTaskExecutor) executor).initialize();
+        }
+        executor.execute(this::block);
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.execute(() -> {
+        });
+    }
+
+    private void block() {
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ExecutorSnapshot snapshot() {
+        return executorFactory.getExecutorSnapshot("metrics").orElseThrow(IllegalStateException::new);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 并行度为1，第一个任务阻塞工作线程，之后的任务排队
+ *
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+class ForkJoinTaskExecutorTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger rejections = new AtomicInteger();
+
+    private ForkJoinTaskExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (executor != null) {
+            executor.getForkJoinPool().shutdownNow();
+        }
+    }
+
+    /**
+     * AbortPolicy：抛出TaskRejectedException，任务数不变
+     */
+    @Test
+    void should_abort_when_saturated() throws InterruptedException {
+        executor = saturated(new ThreadPoolExecutor.AbortPolicy(), 1);
+
+        Assertions.assertThrows(TaskRejectedException.class, () -> executor.execute(task("rejected")));
+        assertEquals(1, rejections.get());
+        assertEquals(2, executor.getTaskCount());
+
+        awaitAll();
+        assertEquals(2, executed.size());
+        Assertions.assertFalse(executed.contains("rejected"));
+    }
+
+    /**
+     * CallerRunsPolicy：在提交任务的线程执行
+     */
+    @Test
+    void should_run_in_caller_when_saturated() throws InterruptedException {
+        executor = saturated(new ThreadPoolExecutor.CallerRunsPolicy(), 1);
+        AtomicBoolean callerThread = new AtomicBoolean();
+        Thread caller = Thread.currentThread();
+
+        executor.execute(() -> callerThread.set(Thread.currentThread() == caller));
+        Assertions.assertTrue(callerThread.get());
+        assertEquals(1, rejections.get());
+        awaitAll();
+    }
+
+    /**
+     * DiscardPolicy：丢弃当前任务
+     */
+    @Test
+    void should_discard_when_saturated() throws InterruptedException {
+        executor = saturated(new ThreadPoolExecutor.DiscardPolicy(), 1);
+
+        executor.execute(task("discarded"));
+        assertEquals(1, rejections.get());
+        assertEquals(2, executor.getTaskCount());
+
+        awaitAll();
+        Assertions.assertFalse(executed.contains("discarded"));
+    }
+
+    /**
+     * DiscardOldestPolicy：丢弃排队的任务，提交当前任务
+     */
+    @Test
+    void should_discard_oldest_when_saturated() throws InterruptedException {
+        executor = saturated(new ThreadPoolExecutor.DiscardOldestPolicy(), 1);
+
+        executor.execute(task("newest"));
+        assertEquals(1, rejections.get());
+        assertEquals(2, executor.getTaskCount());
+
+        awaitAll();
+        Assertions.assertTrue(executed.contains("newest"));
+        Assertions.assertFalse(executed.contains("queued"));
+    }
+
+    /**
+     * DiscardOldestPolicy：没有排队的任务可以丢弃时丢弃当前任务，不会超过上限
+     */
+    @Test
+    void should_discard_current_when_nothing_queued() throws InterruptedException {
+        executor = saturated(new ThreadPoolExecutor.DiscardOldestPolicy(), 0);
+
+        executor.execute(task("newest"));
+        assertEquals(1, rejections.get());
+        assertEquals(1, executor.getTaskCount());
+
+        awaitAll();
+        Assertions.assertFalse(executed.contains("newest"));
+    }
+
+    /**
+     * 自定义的拒绝策略需要ThreadPoolExecutor，创建时失败
+     */
+    @Test
+    void should_reject_custom_handler() {
+        RejectedExecutionHandler custom = (task, pool) -> {
+        };
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new ForkJoinTaskExecutor("fj-", true, 1, true, 1, null, custom, false, null));
+    }
+
+    /**
+     * 关闭时等待已经提交的任务执行完成
+     */
+    @Test
+    void should_await_termination() throws InterruptedException {
+        executor = new ForkJoinTaskExecutor("fj-", true, 1, true, 10, null,
+            new ThreadPoolExecutor.AbortPolicy(), true, Duration.ofSeconds(10));
+        executor.execute(() -> {
+            sleep(200);
+            executed.add("running");
+        });
+        executor.execute(task("queued"));
+
+        executor.destroy();
+        Assertions.assertTrue(executor.getForkJoinPool().isTerminated());
+        assertEquals(2, executed.size());
+        Assertions.assertThrows(TaskRejectedException.class, () -> executor.execute(task("closed")));
+    }
+
+    /**
+     * 不等待时中断正在执行的任务
+     */
+    @Test
+    void should_interrupt_without_await_termination() throws InterruptedException {
+        executor = new ForkJoinTaskExecutor("fj-", true, 1, true, 10, null,
+            new ThreadPoolExecutor.AbortPolicy(), false, null);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        executor.destroy();
+        Assertions.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 创建饱和的Executor：一个正在执行的任务，queueCapacity个排队的任务
+     */
+    private ForkJoinTaskExecutor saturated(RejectedExecutionHandler handler, int queueCapacity)
+        throws InterruptedException {
+        ForkJoinTaskExecutor forkJoinExecutor = new ForkJoinTaskExecutor("fj-", true, 1, true, queueCapacity,
+            null, handler, false, null);
+        forkJoinExecutor.setRejectionListener(rejections::incrementAndGet);
+        forkJoinExecutor.execute(() -> {
+            started.countDown();
+            awaitRelease();
+            executed.add("running");
+        });
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < queueCapacity; i++) {
+            forkJoinExecutor.execute(task("queued"));
+        }
+        return forkJoinExecutor;
+    }
+
+    private Runnable task(String name) {
+        return () -> executed.add(name);
+    }
+
+    private void awaitAll() throws InterruptedException {
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (executor.getTaskCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, executor.getTaskCount());
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author LuoQuan
+ * @since 2022/6/30
+ */
+class ResizableBlockingQueueTest {
+
+    /**
+     * 容量只能大于0
+     */
+    @Test
+    void should_reject_invalid_capacity() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ResizableBlockingQueue<Integer>(0));
+
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> queue.setCapacity(-1));
+        assertEquals(1, queue.getCapacity());
+    }
+
+    /**
+     * 扩大容量后可以继续入队
+     */
+    @Test
+    void should_accept_more_after_growing() {
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(2);
+        Assertions.assertTrue(queue.offer(1));
+        Assertions.assertTrue(queue.offer(2));
+        Assertions.assertFalse(queue.offer(3));
+
+        queue.setCapacity(3);
+        assertEquals(1, queue.remainingCapacity());
+        Assertions.assertTrue(queue.offer(3));
+        Assertions.assertFalse(queue.offer(4));
+        assertEquals(3, queue.size());
+    }
+
+    /**
+     * 缩小到小于当前元素数时保留已经入队的元素，元素数降到容量以下之前拒绝新的元素
+     */
+    @Test
+    void should_keep_elements_after_shrinking_below_size() {
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(queue.offer(i));
+        }
+
+        queue.setCapacity(2);
+        assertEquals(4, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+        Assertions.assertFalse(queue.offer(4));
+
+        assertEquals(0, queue.poll());
+        assertEquals(1, queue.poll());
+        Assertions.assertFalse(queue.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(1, queue.drainTo(drained, 1));
+        Assertions.assertTrue(queue.offer(4));
+        Assertions.assertFalse(queue.offer(5));
+    }
+
+    /**
+     * 阻塞入队的线程在扩大容量或者出队后被唤醒
+     */
+    @Test
+    void should_wake_up_blocked_put() throws InterruptedException {
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(1);
+        queue.put(0);
+        CountDownLatch putted = new CountDownLatch(2);
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put(1);
+                putted.countDown();
+                queue.put(2);
+                putted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        Assertions.assertFalse(putted.await(100, TimeUnit.MILLISECONDS));
+        queue.setCapacity(2);
+        Assertions.assertTrue(waitFor(putted, 1));
+
+        assertEquals(0, queue.take());
+        Assertions.assertTrue(putted.await(10, TimeUnit.SECONDS));
+        producer.join();
+        assertEquals(2, queue.size());
+    }
+
+    /**
+     * offer超时返回false，缩小容量后同样等待
+     */
+    @Test
+    void should_time_out_offer_when_full() throws InterruptedException {
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(2);
+        queue.put(0);
+        queue.setCapacity(1);
+        Assertions.assertFalse(queue.offer(1, 50, TimeUnit.MILLISECONDS));
+
+        queue.clear();
+        Assertions.assertTrue(queue.offer(1, 50, TimeUnit.MILLISECONDS));
+    }
+
+    private static boolean waitFor(CountDownLatch latch, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (latch.getCount() > count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return latch.getCount() <= count;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+class TaskTimerTest {
+
+    /**
+     * 忙碌时间包括正在执行的任务已经执行的时间，任务结束后与执行时间一致
+     */
+    @Test
+    void should_count_running_task_as_busy() throws InterruptedException {
+        TaskTimer timer = new TaskTimer(null);
+        timer.trackBusyTime();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread thread = new Thread(timer.decorate(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        thread.start();
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        TaskTimer.Sample first = timer.sample();
+        Thread.sleep(100);
+        TaskTimer.Sample running = timer.sample();
+        assertEquals(0, running.getRunNanos());
+        Assertions.assertTrue(running.getBusyNanos() - first.getBusyNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        release.countDown();
+        thread.join();
+        TaskTimer.Sample completed = timer.sample();
+        assertEquals(1, completed.getCompleted());
+        Assertions.assertTrue(completed.getRunNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(completed.getRunNanos(), completed.getBusyNanos());
+    }
+
+    /**
+     * 没有开启忙碌时间统计时不加锁，忙碌时间只包括执行结束的任务
+     */
+    @Test
+    void should_count_completed_task_only_when_busy_not_tracked() throws InterruptedException {
+        TaskTimer timer = new TaskTimer(null);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread thread = new Thread(timer.decorate(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        thread.start();
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread.sleep(10);
+        assertEquals(0, timer.sample().getBusyNanos());
+
+        release.countDown();
+        thread.join();
+        TaskTimer.Sample completed = timer.sample();
+        Assertions.assertTrue(completed.getRunNanos() > 0);
+        assertEquals(completed.getRunNanos(), completed.getBusyNanos());
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022 the original author or authors.
+ */
+
+package com.myszh.samples.async.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author LuoQuan
+ * @since 2022/6/28
+ */
+class VirtualThreadsTest {
+
+    /**
+     * 支持虚拟线程时创建的线程是虚拟线程，名称为 前缀+序号
+     */
+    @Test
+    void should_create_virtual_thread() throws Exception {
+        Assumptions.assumeTrue(VirtualThreads.isSupported(), "virtual threads are not supported");
+
+        ThreadFactory threadFactory = VirtualThreads.threadFactory("vt-");
+        AtomicBoolean executed = new AtomicBoolean();
+        Thread thread = threadFactory.newThread(() -> executed.set(true));
+        thread.start();
+        thread.join();
+
+        assertEquals("vt-0", thread.getName());
+        Assertions.assertTrue((boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+        Assertions.assertTrue(executed.get());
+    }
+
+    /**
+     * 不支持虚拟线程时(Java 19以下，或者Java 19、20没有开启预览特性)不能创建ThreadFactory
+     */
+    @Test
+    void should_fail_when_not_supported() {
+        Assumptions.assumeFalse(VirtualThreads.isSupported(), "virtual threads are supported");
+
+        Assertions.assertThrows(IllegalStateException.class, () -> VirtualThreads.threadFactory("vt-"));
+    }
+}